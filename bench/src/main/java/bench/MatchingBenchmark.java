@@ -0,0 +1,57 @@
+package bench;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Purpose:         Benchmarks scoring tool annotations against the CRAFT annotations (scorePapers: span matching,
+ *                  partial matches, and Jaccard values) for a growing number of papers. The result cache is off, so
+ *                  every paper is scored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class MatchingBenchmark {
+    private static final MethodHandle PULL_ANNOS = Stages.stage("averageJaccard", "pullAnnos",
+            methodType(Map.class, Object.class, File.class), File.class);
+    private static final MethodHandle PULL_CRAFT_ANNOS = Stages.stage("averageJaccard", "pullCRAFTAnnos",
+            methodType(Map.class, Object.class, File.class), File.class);
+    private static final MethodHandle SETUP_ONTOLOGY = Stages.stage("averageJaccard", "setupOntology",
+            methodType(void.class, Object.class, File.class), File.class);
+    private static final MethodHandle SCORE_PAPERS = Stages.stage("averageJaccard", "scorePapers",
+            methodType(Map.class, Object.class, String.class, Map.class, Map.class), String.class, Map.class,
+            Map.class);
+
+    @Param({"10", "35", "67"})
+    public int papers;
+    @Param({"textpresso", "metamap", "scigraph"})
+    public String tool;
+
+    private Object evaluator;
+    private Map<?, ?> craft;
+    private Map<?, ?> toolAnnos;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        List<String> ids = Stages.paperIDs(papers);
+        evaluator = Stages.newEvaluator();
+        SETUP_ONTOLOGY.invokeExact(evaluator, Stages.fixtureOntology());
+        craft = (Map<?, ?>) PULL_CRAFT_ANNOS.invokeExact(evaluator, Stages.craftCorpus(ids));
+        toolAnnos = (Map<?, ?>) PULL_ANNOS.invokeExact(evaluator, Stages.toolCorpus(tool, ids));
+    }
+
+    @Benchmark
+    public Map<?, ?> scorePapers() throws Throwable {
+        return (Map<?, ?>) SCORE_PAPERS.invokeExact(evaluator, tool, (Map) craft, (Map) toolAnnos);
+    }
+}
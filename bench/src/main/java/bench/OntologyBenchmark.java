@@ -0,0 +1,111 @@
+package bench;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Purpose:         Benchmarks the ontology stages against the bundled GO fixture: Jaccard values for GO:ID pairs
+ *                  (calculateJaccard, and the index merge on its own), level lookups (getLongestPathToID), and building
+ *                  the index with its depth and superclass tables (OntologyIndex.build).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class OntologyBenchmark {
+    private static final MethodHandle SETUP_ONTOLOGY = Stages.stage("averageJaccard", "setupOntology",
+            methodType(void.class, Object.class, File.class), File.class);
+    private static final MethodHandle CALCULATE_JACCARD = Stages.stage("averageJaccard", "calculateJaccard",
+            methodType(double.class, Object.class, String.class, String.class), String.class, String.class);
+    private static final MethodHandle LONGEST_PATH = Stages.stage("averageJaccard", "getLongestPathToID",
+            methodType(int.class, Object.class, String.class), String.class);
+    private static final MethodHandle INDEX_JACCARD = Stages.stage("OntologyIndex", "jaccard",
+            methodType(double.class, Object.class, String.class, String.class), String.class, String.class);
+    private static final MethodHandle BUILD_INDEX = Stages.stage("OntologyIndex", "build",
+            methodType(Object.class, OWLOntology.class, OWLReasoner.class), OWLOntology.class, OWLReasoner.class);
+
+    //number of GO:ID pairs scored per invocation
+    @Param({"1000", "100000"})
+    public int pairs;
+
+    private Object evaluator;
+    private Object index;
+    private String[] craftIDs, toolIDs;             //GO:0000000 form, as stored on annotations
+    private String[] craftShort, toolShort;         //GO_0000000 form, as used by the index
+    private OWLOntology ontology;
+    private OWLReasoner reasoner;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        File fixture = Stages.fixtureOntology();
+        evaluator = Stages.newEvaluator();
+        SETUP_ONTOLOGY.invokeExact(evaluator, fixture);
+        Field goIndex = evaluator.getClass().getDeclaredField("go_index");
+        goIndex.setAccessible(true);
+        index = goIndex.get(evaluator);
+
+        //random pairs of referenced GO:IDs, the same on every run
+        List<String> ids = Stages.referencedIDs();
+        Random random = new Random(42);
+        craftIDs = new String[pairs];
+        toolIDs = new String[pairs];
+        craftShort = new String[pairs];
+        toolShort = new String[pairs];
+        for(int i = 0; i < pairs; i++){
+            craftIDs[i] = ids.get(random.nextInt(ids.size()));
+            toolIDs[i] = ids.get(random.nextInt(ids.size()));
+            craftShort[i] = craftIDs[i].replace(":", "_");
+            toolShort[i] = toolIDs[i].replace(":", "_");
+        }
+
+        ontology = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(fixture);
+        reasoner = new ElkReasonerFactory().createReasoner(ontology);
+        reasoner.precomputeInferences();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        reasoner.dispose();
+    }
+
+    @Benchmark
+    public void calculateJaccard(Blackhole bh) throws Throwable {
+        for(int i = 0; i < pairs; i++){
+            bh.consume((double) CALCULATE_JACCARD.invokeExact(evaluator, craftIDs[i], toolIDs[i]));
+        }
+    }
+
+    @Benchmark
+    public void indexJaccard(Blackhole bh) throws Throwable {
+        for(int i = 0; i < pairs; i++){
+            bh.consume((double) INDEX_JACCARD.invokeExact(index, craftShort[i], toolShort[i]));
+        }
+    }
+
+    @Benchmark
+    public void getLongestPathToID(Blackhole bh) throws Throwable {
+        for(int i = 0; i < pairs; i++){
+            bh.consume((int) LONGEST_PATH.invokeExact(evaluator, craftShort[i]));
+        }
+    }
+
+    @Benchmark
+    public Object buildIndex() throws Throwable {
+        return (Object) BUILD_INDEX.invokeExact(ontology, reasoner);
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Purpose:         Benchmarks reading the tool TSV files (pullAnnos) and the CRAFT Knowtator XML files
+ *                  (pullCRAFTAnnos) for a growing number of papers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class ParsingBenchmark {
+    private static final MethodHandle PULL_ANNOS = Stages.stage("averageJaccard", "pullAnnos",
+            methodType(Map.class, Object.class, File.class), File.class);
+    private static final MethodHandle PULL_CRAFT_ANNOS = Stages.stage("averageJaccard", "pullCRAFTAnnos",
+            methodType(Map.class, Object.class, File.class), File.class);
+
+    @State(Scope.Benchmark)
+    public static class ToolCorpus {
+        @Param({"10", "35", "67"})
+        public int papers;
+        @Param({"ncbo", "textpresso", "metamap", "scigraph"})
+        public String tool;
+
+        Object evaluator;
+        File directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            evaluator = Stages.newEvaluator();
+            directory = Stages.toolCorpus(tool, Stages.paperIDs(papers));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CraftCorpus {
+        @Param({"10", "35", "67"})
+        public int papers;
+
+        Object evaluator;
+        File directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            evaluator = Stages.newEvaluator();
+            directory = Stages.craftCorpus(Stages.paperIDs(papers));
+        }
+    }
+
+    @Benchmark
+    public Map<?, ?> pullAnnos(ToolCorpus corpus) throws Throwable {
+        return (Map<?, ?>) PULL_ANNOS.invokeExact(corpus.evaluator, corpus.directory);
+    }
+
+    @Benchmark
+    public Map<?, ?> pullCRAFTAnnos(CraftCorpus corpus) throws Throwable {
+        return (Map<?, ?>) PULL_CRAFT_ANNOS.invokeExact(corpus.evaluator, corpus.directory);
+    }
+}
@@ -0,0 +1,182 @@
+package bench;
+
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Purpose:         Access to the evaluation stages and fixture data for the benchmarks. The stages live in the default
+ *                  package, which cannot be imported, so they are bound as method handles; invokeExact on these
+ *                  handles does not box arguments or results, so allocation numbers reflect the stages themselves.
+ */
+final class Stages {
+    //tools with bundled annotations under input/
+    static final String[] TOOLS = {"ncbo", "textpresso", "metamap", "scigraph"};
+    //tool whose annotations stand in for the CRAFT gold standard
+    static final String CRAFT_SOURCE = "ncbo";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Stages(){}
+
+    /***
+     * newEvaluator creates the class that runs the evaluation stages.
+     * @return new averageJaccard instance
+     */
+    static Object newEvaluator(){
+        try{
+            return Class.forName("averageJaccard").getDeclaredConstructor().newInstance();
+        }catch(ReflectiveOperationException ex){
+            throw new IllegalStateException("Cannot create averageJaccard", ex);
+        }
+    }
+
+    /***
+     * stage binds a method of the evaluator (or another default package class) as a method handle.
+     * @param className - class declaring the method
+     * @param name - method name
+     * @param type - handle type; the declaring class is replaced by Object for instance methods
+     * @param params - declared parameter types
+     * @return method handle with the given type
+     */
+    static MethodHandle stage(String className, String name, MethodType type, Class<?>... params){
+        try{
+            Method method = Class.forName(className).getDeclaredMethod(name, params);
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(type);
+        }catch(ReflectiveOperationException ex){
+            throw new IllegalStateException("Cannot bind " + className + "." + name, ex);
+        }
+    }
+
+    /***
+     * inputDirectory finds the bundled input directory, from the repository root or the bench module.
+     * @return input directory
+     */
+    static File inputDirectory(){
+        File input = new File(System.getProperty("bench.input", "input"));
+        if(!input.isDirectory()){
+            input = new File("../input");
+        }
+        if(!input.isDirectory()){
+            throw new IllegalStateException("Bundled input/ directory not found; run from the repository root or set "
+                    + "-Dbench.input");
+        }
+        return input;
+    }
+
+    /***
+     * paperIDs gets the IDs of the first papers with bundled annotations for every tool.
+     * @param papers - number of papers
+     * @return sorted paper IDs
+     */
+    static List<String> paperIDs(int papers){
+        List<String> ids = new ArrayList<>();
+        for(File f: new File(inputDirectory(), CRAFT_SOURCE + "Annotations").listFiles()){
+            ids.add(f.getName().substring(0, f.getName().length() - 4));
+        }
+        Collections.sort(ids);
+        return ids.subList(0, Math.min(papers, ids.size()));
+    }
+
+    /***
+     * toolCorpus copies the annotations of a tool for the given papers into a temporary directory.
+     * @param tool - tool name
+     * @param papers - paper IDs
+     * @return directory of tab-separated annotation files
+     * @throws IOException if the files cannot be copied
+     */
+    static File toolCorpus(String tool, List<String> papers) throws IOException{
+        File dir = Files.createTempDirectory("bench-" + tool).toFile();
+        for(String paper: papers){
+            File source = new File(inputDirectory(), tool + "Annotations/" + paper + ".tsv");
+            Files.copy(source.toPath(), new File(dir, paper + ".tsv").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dir;
+    }
+
+    /***
+     * craftCorpus writes Knowtator XML files in the CRAFT format for the given papers. CRAFT is not bundled, so the
+     * annotations of CRAFT_SOURCE are used as the gold standard.
+     * @param papers - paper IDs
+     * @return directory of Knowtator XML files
+     * @throws IOException if the files cannot be written
+     */
+    static File craftCorpus(List<String> papers) throws IOException{
+        File dir = Files.createTempDirectory("bench-craft").toFile();
+        for(String paper: papers){
+            File source = new File(inputDirectory(), CRAFT_SOURCE + "Annotations/" + paper + ".tsv");
+            List<String> lines = Files.readAllLines(source.toPath(), StandardCharsets.UTF_8);
+            File out = new File(dir, paper + ".txt.knowtator.xml");
+            try(PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(out),
+                    StandardCharsets.UTF_8))){
+                writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+                writer.println("<annotations textSource=\"" + paper + ".txt\">");
+                for(int i = 1; i < lines.size(); i++){
+                    String[] values = lines.get(i).split("\t");
+                    writer.println("  <annotation>");
+                    writer.println("    <mention id=\"CRAFT_GO_Instance_" + i + "\" />");
+                    writer.println("    <annotator id=\"CRAFT_GO_annotator\">CRAFT</annotator>");
+                    writer.println("    <span start=\"" + values[0] + "\" end=\"" + values[1] + "\" />");
+                    writer.println("    <spannedText>" + escape(values[3]) + "</spannedText>");
+                    writer.println("    <creationDate>Mon Oct 30 00:00:00 MST 2017</creationDate>");
+                    writer.println("  </annotation>");
+                }
+                for(int i = 1; i < lines.size(); i++){
+                    String[] values = lines.get(i).split("\t");
+                    writer.println("  <classMention id=\"CRAFT_GO_Instance_" + i + "\">");
+                    writer.println("    <mentionClass id=\"" + values[2] + "\">"
+                            + escape(values.length > 4 ? values[4].toLowerCase() : "") + "</mentionClass>");
+                    writer.println("  </classMention>");
+                }
+                writer.println("</annotations>");
+            }
+        }
+        return dir;
+    }
+
+    /***
+     * fixtureOntology copies the bundled GO fixture into a temporary directory, so its snapshot is written there.
+     * @return fixture ontology file
+     * @throws IOException if the fixture cannot be copied
+     */
+    static File fixtureOntology() throws IOException{
+        File dir = Files.createTempDirectory("bench-go").toFile();
+        File ontology = new File(dir, "go-fixture.owl");
+        try(InputStream in = Stages.class.getResourceAsStream("/go-fixture.owl")){
+            Files.copy(in, ontology.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return ontology;
+    }
+
+    /***
+     * referencedIDs gets the distinct GO:IDs referenced by the bundled tool annotations.
+     * @return sorted GO:IDs (GO:0000000 form)
+     * @throws IOException if the annotations cannot be read
+     */
+    static List<String> referencedIDs() throws IOException{
+        Set<String> ids = new TreeSet<>();
+        for(String tool: TOOLS){
+            for(File f: new File(inputDirectory(), tool + "Annotations").listFiles()){
+                List<String> lines = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+                for(int i = 1; i < lines.size(); i++){
+                    String[] values = lines.get(i).split("\t");
+                    if(values.length > 2 && values[2].matches("GO:\\d{7}")){
+                        ids.add(values[2]);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static String escape(String text){
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
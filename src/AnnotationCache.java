@@ -0,0 +1,244 @@
+//Java imports
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Purpose:         On-disk segment of the parsed annotations of one directory (a tool, or a CRAFT directory), so later
+ *                  runs reload the annotations instead of parsing the files again. The segment is columnar: GO:IDs,
+ *                  terms, and reference terms are stored once in a dictionary and referred to by code, and every
+ *                  column is written as varints (indices as differences), which keeps the segment a fraction of the
+ *                  size of the source files. A discontinuous annotation also stores the inner bounds of its spans.
+ *                  Segments are memory-mapped when read. Each segment is keyed by a fingerprint of the directory's
+ *                  files (name, size, and modification time), so a changed, added, or removed file causes the
+ *                  directory to be parsed again.
+ */
+public class AnnotationCache {
+    private static final int SEGMENT_MAGIC = 0x474F4153;        //"GOAS"
+    private static final int SEGMENT_VERSION = 2;
+
+    private File file;                  //segment for the directory
+
+    /***
+     * AnnotationCache opens the segment of a directory.
+     * @param directory - directory holding the segments
+     * @param name - name of the segment (tool name)
+     */
+    public AnnotationCache(File directory, String name){
+        this.file = new File(directory, name + ".annotations");
+    }
+
+    /***
+     * fingerprint calculates a fingerprint of the files in a directory from their names, sizes, and modification
+     * times, without reading them.
+     * @param annoDirectory - directory of annotation files
+     * @return hex SHA-256 digest of the file listing
+     */
+    public static String fingerprint(File annoDirectory){
+        MessageDigest digest;
+        StringBuilder hex = new StringBuilder();
+        File[] files = annoDirectory.listFiles();
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        if(files != null){
+            Arrays.sort(files);
+            for(File f: files){
+                digest.update((f.getName() + "\t" + f.length() + "\t" + f.lastModified() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for(byte b: digest.digest()){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /***
+     * load reads the annotations from the segment.
+     * @param fingerprint - fingerprint of the directory's current files
+     * @param strings - string dictionary of the run
+     * @param goids - GO dictionary of the run
+     * @return map with the filename as a key and a store of its annotations as a value, or null if there is no
+     *         segment or it was written from different files
+     */
+    public Map<String, AnnotationStore> load(String fingerprint, StringDictionary strings, GoDictionary goids){
+        if(!file.isFile()){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != SEGMENT_MAGIC || buffer.getInt() != SEGMENT_VERSION
+                    || !readString(buffer).equals(fingerprint)){
+                return null;
+            }
+            //dictionary: GO:IDs are encoded in the GO dictionary, everything else in the string dictionary, on use
+            String[] dictionary = new String[readVarint(buffer)];
+            for(int i = 0; i < dictionary.length; i++){
+                dictionary[i] = readString(buffer);
+            }
+            int[] idOrdinals = new int[dictionary.length];
+            int[] stringCodes = new int[dictionary.length];
+            Arrays.fill(idOrdinals, -1);
+            Arrays.fill(stringCodes, -1);
+
+            Map<String, AnnotationStore> annos = new HashMap<>();
+            int papers = readVarint(buffer), rows, start, end, id, term, ref, spans, row, spanstart, spanend;
+            for(int p = 0; p < papers; p++){
+                String paper = dictionary[readVarint(buffer)];
+                AnnotationStore store = new AnnotationStore(strings, goids);
+                rows = readVarint(buffer);
+                start = 0;
+                for(int r = 0; r < rows; r++){
+                    start += unzigzag(readVarint(buffer));
+                    end = start + unzigzag(readVarint(buffer));
+                    spans = readVarint(buffer);
+                    id = readVarint(buffer);
+                    term = readVarint(buffer);
+                    ref = readVarint(buffer);
+                    if(idOrdinals[id] < 0){
+                        idOrdinals[id] = goids.encode(dictionary[id]);
+                    }
+                    if(stringCodes[term] < 0){
+                        stringCodes[term] = strings.encode(dictionary[term]);
+                    }
+                    if(stringCodes[ref] < 0){
+                        stringCodes[ref] = strings.encode(dictionary[ref]);
+                    }
+                    row = store.addEncoded(start, end, idOrdinals[id], stringCodes[term], stringCodes[ref]);
+                    if(spans > 1){
+                        //the first span ends before the outer end; the last span ends at it
+                        spanend = start + readVarint(buffer);
+                        store.setEnd(row, spanend);
+                        for(int i = 1; i < spans; i++){
+                            spanstart = spanend + readVarint(buffer);
+                            spanend = i == spans - 1 ? end : spanstart + readVarint(buffer);
+                            store.addSpan(row, spanstart, spanend);
+                        }
+                    }
+                }
+                annos.put(paper, store);
+            }
+            return annos;
+        }catch(IOException | RuntimeException ex){
+            //unreadable, truncated, or corrupt segment
+            System.out.println("Error: Cannot read annotation cache " + file);
+            return null;
+        }
+    }
+
+    /***
+     * save writes annotations to the segment. The segment is written atomically (see AtomicFile), so an interrupted
+     * run, or another run sharing the cache directory, never leaves a torn segment behind.
+     * @param fingerprint - fingerprint of the directory's files the annotations were parsed from
+     * @param annos - map with the filename as a key and a store of its annotations as a value
+     */
+    public void save(String fingerprint, Map<String, AnnotationStore> annos){
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        ByteArrayOutputStream columns = new ByteArrayOutputStream();
+        File directory = file.getParentFile();
+        int previous;
+
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()){
+            System.out.println("Error: Could not create directory " + directory);
+            return;
+        }
+        try{
+            //columns of each paper, with every string replaced by its code in the segment's dictionary; papers are
+            //kept in the map's order, so the reloaded map iterates in the same order as the parsed one
+            writeVarint(columns, annos.size());
+            for(Map.Entry<String, AnnotationStore> paper: annos.entrySet()){
+                AnnotationStore store = paper.getValue();
+                writeVarint(columns, code(codes, paper.getKey()));
+                writeVarint(columns, store.size());
+                previous = 0;
+                for(int a = 0; a < store.size(); a++){
+                    writeVarint(columns, zigzag(store.getStart(a) - previous));
+                    writeVarint(columns, zigzag(store.getEnd(a) - store.getStart(a)));
+                    writeVarint(columns, store.getSpanCount(a));
+                    writeVarint(columns, code(codes, store.getID(a)));
+                    writeVarint(columns, code(codes, store.getTerm(a)));
+                    writeVarint(columns, code(codes, store.getRef(a)));
+                    //inner bounds of a discontinuous annotation, each as a difference from the one before
+                    for(int i = 0; i < store.getSpanCount(a) - 1; i++){
+                        writeVarint(columns, store.getSpanEnd(a, i) - store.getSpanStart(a, i));
+                        writeVarint(columns, store.getSpanStart(a, i + 1) - store.getSpanEnd(a, i));
+                    }
+                    previous = store.getStart(a);
+                }
+            }
+
+            //header and dictionary, then the columns
+            AtomicFile.write(file, out -> {
+                out.writeInt(SEGMENT_MAGIC);
+                out.writeInt(SEGMENT_VERSION);
+                writeString(out, fingerprint);
+                writeVarint(out, codes.size());
+                for(String value: codes.keySet()){
+                    writeString(out, value);
+                }
+                columns.writeTo(out);
+            });
+        }catch(IOException ex){
+            System.out.println("Error: Could not write to file " + file);
+        }
+    }
+
+    private static int code(Map<String, Integer> codes, String value){
+        Integer code = codes.get(value);
+        if(code == null){
+            code = codes.size();
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    //signed values are zigzag-encoded, so small negative differences stay short
+    private static int zigzag(int value){
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    //varints: 7 bits per byte, low bits first, high bit set on every byte but the last
+    private static void writeVarint(OutputStream out, int value) throws IOException{
+        while((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer){
+        int value = 0, shift = 0;
+        byte b;
+        do{
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }while(b < 0);
+        return value;
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException{
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,343 @@
+//Java imports
+import java.util.Arrays;
+
+/**
+ * Purpose:         Columnar store of the annotations of a single paper. Each annotation is a row across primitive
+ *                  columns: start and end index, the ordinal of its GO:ID in the run's GoDictionary, and the
+ *                  dictionary codes of its term and reference term. This takes a fraction of the heap of one object
+ *                  per annotation, and lets matching and bucketing scan plain arrays. A discontinuous annotation
+ *                  (several spans of text) keeps its outer bounds as start and end, and its spans, sorted and
+ *                  non-overlapping, in one packed array shared by the store. Rows are added while a paper is read and
+ *                  are not thread-safe to modify; a filled store can be read from any thread.
+ */
+public class AnnotationStore {
+    private StringDictionary dictionary;    //codes of the term columns
+    private GoDictionary goids;             //ordinals of the GO:IDs
+    private int size = 0;                   //number of rows
+    private int[] starts;                   //term's starting index in paper
+    private int[] ends;                     //term's ending index in paper
+    private int[] ids;                      //ordinal of the GO:ID for ontology term
+    private int[] terms;                    //code of the term in paper
+    private int[] refs;                     //code of the ontology term
+    private int[] fragments;                //offset of the row's spans in spans, or -1 if it has a single span
+    private int[] spans;                    //packed spans of discontinuous rows: count, then start and end of each
+    private int spansize = 0;               //used length of spans
+
+    //constructor
+    public AnnotationStore(StringDictionary dictionary, GoDictionary goids){
+        this.dictionary = dictionary;
+        this.goids = goids;
+        this.starts = new int[16];
+        this.ends = new int[16];
+        this.ids = new int[16];
+        this.terms = new int[16];
+        this.refs = new int[16];
+        this.fragments = new int[16];
+        this.spans = new int[0];
+    }
+
+    /***
+     * add adds an annotation to the store.
+     * @param start - term's starting index in paper
+     * @param end - term's ending index in paper
+     * @param id - GO:ID for ontology term
+     * @param term - term in paper
+     * @param ref - ontology term
+     * @return row of the annotation
+     */
+    public int add(int start, int end, String id, String term, String ref){
+        if(size == starts.length){
+            grow(size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        ids[size] = goids.encode(id);
+        terms[size] = dictionary.encode(term);
+        refs[size] = dictionary.encode(ref);
+        fragments[size] = -1;
+        return size++;
+    }
+
+    /***
+     * add adds an annotation whose GO:ID and terms are already encoded, as when it is read from the annotation cache.
+     * @param start - term's starting index in paper
+     * @param end - term's ending index in paper
+     * @param id - ordinal of the GO:ID in the GO dictionary
+     * @param term - code of the term in the string dictionary
+     * @param ref - code of the ontology term in the string dictionary
+     * @return row of the annotation
+     */
+    public int addEncoded(int start, int end, int id, int term, int ref){
+        if(size == starts.length){
+            grow(size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        ids[size] = id;
+        terms[size] = term;
+        refs[size] = ref;
+        fragments[size] = -1;
+        return size++;
+    }
+
+    /***
+     * addSpan adds another span to an annotation whose text is discontinuous. The row's spans are kept sorted, and
+     * overlapping or adjacent spans are joined, so equal text always gives equal spans; start and end become the outer
+     * bounds of the spans.
+     * @param row - row of the annotation, with its first span already set
+     * @param start - span's starting index in paper
+     * @param end - span's ending index in paper
+     */
+    public void addSpan(int row, int start, int end){
+        int offset = fragments[row], count = offset < 0 ? 1 : spans[offset], last, kept;
+        //the row's spans are grown at the end of the packed array, so they are moved there first
+        if(offset < 0 || offset + 1 + 2 * count != spansize){
+            reserve(1 + 2 * count);
+            if(offset < 0){
+                spans[spansize + 1] = starts[row];
+                spans[spansize + 2] = ends[row];
+            }
+            else{
+                System.arraycopy(spans, offset + 1, spans, spansize + 1, 2 * count);
+            }
+            offset = spansize;
+            spans[offset] = count;
+            spansize += 1 + 2 * count;
+            fragments[row] = offset;
+        }
+        reserve(2);
+        //insert the span in start order
+        last = offset + 1 + 2 * count;
+        while(last > offset + 1 && spans[last - 2] > start){
+            spans[last] = spans[last - 2];
+            spans[last + 1] = spans[last - 1];
+            last -= 2;
+        }
+        spans[last] = start;
+        spans[last + 1] = end;
+        count++;
+        //join overlapping or adjacent spans
+        kept = 1;
+        for(int i = 1; i < count; i++){
+            last = offset + 1 + 2 * (kept - 1);
+            if(spans[offset + 1 + 2 * i] <= spans[last + 1]){
+                spans[last + 1] = Math.max(spans[last + 1], spans[offset + 2 + 2 * i]);
+            }
+            else{
+                spans[last + 2] = spans[offset + 1 + 2 * i];
+                spans[last + 3] = spans[offset + 2 + 2 * i];
+                kept++;
+            }
+        }
+        starts[row] = spans[offset + 1];
+        ends[row] = spans[offset + 2 * kept];
+        if(kept == 1){
+            //joined into a single span
+            fragments[row] = -1;
+            spansize = offset;
+        }
+        else{
+            spans[offset] = kept;
+            spansize = offset + 1 + 2 * kept;
+        }
+    }
+
+    /***
+     * getSpanStart gets the starting index of one of an annotation's spans.
+     * @param row - row of the annotation
+     * @param i - span, in start order
+     * @return span's starting index in paper
+     */
+    public int getSpanStart(int row, int i){
+        return fragments[row] < 0 ? starts[row] : spans[fragments[row] + 1 + 2 * i];
+    }
+
+    /***
+     * getSpanEnd gets the ending index of one of an annotation's spans.
+     * @param row - row of the annotation
+     * @param i - span, in start order
+     * @return span's ending index in paper
+     */
+    public int getSpanEnd(int row, int i){
+        return fragments[row] < 0 ? ends[row] : spans[fragments[row] + 2 + 2 * i];
+    }
+
+    private void reserve(int length){
+        if(spansize + length > spans.length){
+            spans = Arrays.copyOf(spans, Math.max(spansize + length, spans.length * 2));
+        }
+    }
+
+    /***
+     * sameSpans checks whether an annotation covers the same text as an annotation of another store.
+     * @param row - row of the annotation
+     * @param other - store of the other annotation
+     * @param otherrow - row of the other annotation
+     * @return true if both have the same spans
+     */
+    public boolean sameSpans(int row, AnnotationStore other, int otherrow){
+        int count = getSpanCount(row);
+        if(starts[row] != other.starts[otherrow] || ends[row] != other.ends[otherrow]
+                || count != other.getSpanCount(otherrow)){
+            return false;
+        }
+        //the outer bounds are equal, so only the inner bounds are left
+        for(int i = 1; i < count; i++){
+            if(getSpanStart(row, i) != other.getSpanStart(otherrow, i)
+                    || getSpanEnd(row, i - 1) != other.getSpanEnd(otherrow, i - 1)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * sharedLength counts the characters an annotation shares with an annotation of another store. Both sets of spans
+     * are sorted, so they are merged in one pass.
+     * @param row - row of the annotation
+     * @param other - store of the other annotation
+     * @param otherrow - row of the other annotation
+     * @return number of characters covered by both
+     */
+    public int sharedLength(int row, AnnotationStore other, int otherrow){
+        int count = getSpanCount(row), othercount = other.getSpanCount(otherrow), i = 0, j = 0, shared = 0, end,
+                otherend;
+        while(i < count && j < othercount){
+            end = getSpanEnd(row, i);
+            otherend = other.getSpanEnd(otherrow, j);
+            shared += Math.max(0, Math.min(end, otherend)
+                    - Math.max(getSpanStart(row, i), other.getSpanStart(otherrow, j)));
+            //move past the span that ends first
+            if(end <= otherend){
+                i++;
+            }
+            else{
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /***
+     * spanLength counts the characters an annotation covers, leaving out the gaps of a discontinuous annotation.
+     * @param row - row of the annotation
+     * @return number of characters in its spans
+     */
+    public int spanLength(int row){
+        int length = 0;
+        for(int i = 0; i < getSpanCount(row); i++){
+            length += getSpanEnd(row, i) - getSpanStart(row, i);
+        }
+        return length;
+    }
+
+    /***
+     * addAll adds every annotation of another store sharing the same dictionary.
+     * @param other - store to copy the rows of
+     */
+    public void addAll(AnnotationStore other){
+        if(size + other.size > starts.length){
+            grow(Math.max(size + other.size, starts.length * 2));
+        }
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.ends, 0, ends, size, other.size);
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        System.arraycopy(other.terms, 0, terms, size, other.size);
+        System.arraycopy(other.refs, 0, refs, size, other.size);
+        //the other store's spans are appended, so its offsets move by the current length
+        for(int i = 0; i < other.size; i++){
+            fragments[size + i] = other.fragments[i] < 0 ? -1 : other.fragments[i] + spansize;
+        }
+        reserve(other.spansize);
+        System.arraycopy(other.spans, 0, spans, spansize, other.spansize);
+        spansize += other.spansize;
+        size += other.size;
+    }
+
+    /***
+     * sortByEnd sorts the rows by end index. The sort is stable, so rows with the same end index keep their order.
+     */
+    public void sortByEnd(){
+        int[] order = sortedRows(ends, null);
+        starts = permute(starts, order);
+        ends = permute(ends, order);
+        ids = permute(ids, order);
+        terms = permute(terms, order);
+        refs = permute(refs, order);
+        fragments = permute(fragments, order);
+    }
+
+    /***
+     * spanOrder gets the rows sorted by (end index, start index), without moving them. Rows with the same span keep
+     * their order.
+     * @return rows in span order
+     */
+    public int[] spanOrder(){
+        return sortedRows(ends, sortedRows(starts, null));
+    }
+
+    /***
+     * startOrder gets the rows sorted by start index, without moving them. Rows with the same start keep their order.
+     * @return rows in start order
+     */
+    public int[] startOrder(){
+        return sortedRows(starts, null);
+    }
+
+    /***
+     * sortedRows stably sorts rows by a column: the value and the row's position are packed into a long, so a
+     * primitive sort keeps equal values in their previous order.
+     * @param column - values to sort by
+     * @param order - rows in their previous order, or null for row order
+     * @return rows sorted by the column
+     */
+    private int[] sortedRows(int[] column, int[] order){
+        long[] keys = new long[size];
+        int[] sorted = new int[size];
+        for(int i = 0; i < size; i++){
+            keys[i] = ((long) column[order == null ? i : order[i]] << 32) | i;
+        }
+        Arrays.sort(keys);
+        for(int i = 0; i < size; i++){
+            int position = (int) keys[i];
+            sorted[i] = order == null ? position : order[position];
+        }
+        return sorted;
+    }
+
+    private int[] permute(int[] column, int[] order){
+        int[] sorted = new int[size];
+        for(int i = 0; i < size; i++){
+            sorted[i] = column[order[i]];
+        }
+        return sorted;
+    }
+
+    private void grow(int capacity){
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        terms = Arrays.copyOf(terms, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+        fragments = Arrays.copyOf(fragments, capacity);
+    }
+
+    //getters/setters
+    public int size(){ return size; }
+    public int getStart(int row){ return starts[row]; }
+    public int getEnd(int row){ return ends[row]; }
+    public int getIDOrdinal(int row){ return ids[row]; }
+    public int getRefCode(int row){ return refs[row]; }
+    public String getID(int row){ return goids.decode(ids[row]); }
+    public String getTerm(int row){ return dictionary.decode(terms[row]); }
+    public String getRef(int row){ return dictionary.decode(refs[row]); }
+    public int getRefWordCount(int row){ return dictionary.wordCount(refs[row]); }
+    public int getSpanCount(int row){ return fragments[row] < 0 ? 1 : spans[fragments[row]]; }
+    public int[] getStarts(){ return starts; }
+    public int[] getEnds(){ return ends; }
+    public void setStart(int row, int start){ starts[row] = start; }
+    public void setEnd(int row, int end){ ends[row] = end; }
+    public void setID(int row, String id){ ids[row] = goids.encode(id); }
+    public void setTerm(int row, String term){ terms[row] = dictionary.encode(term); }
+    public void setRef(int row, String ref){ refs[row] = dictionary.encode(ref); }
+}
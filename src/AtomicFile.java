@@ -0,0 +1,41 @@
+//Java imports
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Purpose:         Writes the binary caches (ontology snapshots, annotation segments, and result stores) atomically.
+ *                  The content is written to a temporary file in the same directory and then moved over the target
+ *                  in one step, so a crashed run, or two runs sharing a cache directory, never leave a torn file
+ *                  behind; readers see either the old file or the new one.
+ */
+public class AtomicFile {
+
+    /***
+     * A Content writes the content of a file.
+     */
+    public interface Content{
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /***
+     * write writes a file atomically. The temporary file is deleted if the content cannot be written.
+     * @param file - file to write; it is replaced if it exists
+     * @param content - writes the content of the file
+     * @throws IOException if the file cannot be written or moved into place
+     */
+    public static void write(File file, Content content) throws IOException{
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try{
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+                content.write(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }catch(IOException | RuntimeException ex){
+            Files.deleteIfExists(temp.toPath());
+            throw ex;
+        }
+    }
+}
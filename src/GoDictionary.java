@@ -0,0 +1,106 @@
+//Java imports
+import java.util.*;
+
+/**
+ * Purpose:         Dictionary of the GO:IDs used in a run. Every spelling of an ID (GO:0003675, GO_0003675, its full
+ *                  IRI, or a non-GO value such as independent_continuant) is given one dense int ordinal, so
+ *                  annotations compare IDs as ints and the ontology is queried without rebuilding strings. Each
+ *                  ordinal maps back to the GO:0003675 form for output, and, once the dictionary is bound to the
+ *                  ontology index, to the class's ordinal in the index. Adding IDs is synchronized; lookups by ordinal
+ *                  are lock-free, because an entry is written before its ordinal is handed out.
+ */
+public class GoDictionary {
+    private Map<String, Integer> spellings = new HashMap<>();       //any spelling -> ordinal
+    private volatile String[] ids = new String[1024];               //ordinal -> GO:0003675 form
+    private volatile int[] indexOrdinals = new int[1024];           //ordinal -> ontology index ordinal, or -1
+    private int size = 0;                                           //number of IDs
+    private OntologyIndex index;                                    //ontology the IDs are bound to; null if none
+
+    /***
+     * canonical gets the form of an ID used for output: the IRI prefix is removed and GO_ becomes GO:.
+     * @param spelling - ID as written in an annotation or the ontology
+     * @return ID in the GO:0003675 form; IDs outside the GO are returned without their IRI prefix
+     */
+    public static String canonical(String spelling){
+        int slash = Math.max(spelling.lastIndexOf('/'), spelling.lastIndexOf('#'));
+        String id = slash >= 0 ? spelling.substring(slash + 1) : spelling;
+        return id.startsWith("GO_") ? "GO:" + id.substring(3) : id;
+    }
+
+    /***
+     * encode gets the ordinal of an ID, adding the ID if none of its spellings have been seen yet.
+     * @param spelling - ID in any spelling
+     * @return ordinal of the ID
+     */
+    public synchronized int encode(String spelling){
+        Integer ordinal = spellings.get(spelling);
+        if(ordinal != null){
+            return ordinal;
+        }
+        String id = canonical(spelling);
+        ordinal = spellings.get(id);
+        if(ordinal == null){
+            ordinal = size;
+            if(size == ids.length){
+                String[] grownIDs = Arrays.copyOf(ids, size * 2);
+                int[] grownOrdinals = Arrays.copyOf(indexOrdinals, size * 2);
+                grownIDs[size] = id;
+                grownOrdinals[size] = indexOrdinal(id);
+                indexOrdinals = grownOrdinals;
+                ids = grownIDs;
+            }
+            else{
+                indexOrdinals[size] = indexOrdinal(id);
+                ids[size] = id;
+            }
+            size++;
+            spellings.put(id, ordinal);
+        }
+        spellings.put(spelling, ordinal);
+        return ordinal;
+    }
+
+    /***
+     * bind maps every ID, including the ones added later, to its class in the ontology index.
+     * @param index - ontology index
+     */
+    public synchronized void bind(OntologyIndex index){
+        int[] bound = new int[indexOrdinals.length];
+        this.index = index;
+        for(int i = 0; i < size; i++){
+            bound[i] = indexOrdinal(ids[i]);
+        }
+        indexOrdinals = bound;
+    }
+
+    private int indexOrdinal(String id){
+        //the index uses IRI short forms (GO_0003675)
+        return index == null ? -1 : index.getOrdinal(id.replace(":", "_"));
+    }
+
+    /***
+     * decode gets the GO:0003675 form of an ordinal.
+     * @param ordinal - ordinal returned by encode
+     * @return ID of the ordinal
+     */
+    public String decode(int ordinal){
+        return ids[ordinal];
+    }
+
+    /***
+     * getIndexOrdinal gets the class of an ordinal in the ontology index the dictionary is bound to.
+     * @param ordinal - ordinal returned by encode
+     * @return ordinal in the ontology index, or -1 if the ID is not in the ontology
+     */
+    public int getIndexOrdinal(int ordinal){
+        return indexOrdinals[ordinal];
+    }
+
+    /***
+     * size gets the number of IDs in the dictionary; ordinals are below this number.
+     * @return number of IDs
+     */
+    public synchronized int size(){
+        return size;
+    }
+}
@@ -0,0 +1,169 @@
+//Java imports
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Purpose:         Immutable lookup table of the ontology values a run needs, resolved in one sweep before scoring:
+ *                  the level of every distinct GO:ID in the run's GoDictionary, and the Jaccard value of every distinct
+ *                  pair of CRAFT and tool GO:IDs found at matching spans. Values are keyed by dictionary ordinals, so
+ *                  the scoring stages read an array or probe an open-addressed table instead of querying the ontology
+ *                  index per annotation. Pairs are resolved in parallel when a pool is given; the table is never
+ *                  modified once built, so it can be read from any thread without locking.
+ */
+public class GoLookup {
+    private static final long EMPTY = -1L;      //free slot; keys are never negative
+    private static final int CHUNK = 4096;      //slots resolved per task
+
+    private int[] depths;                       //dictionary ordinal -> level of the GO:ID
+    private long[] keys;                        //CRAFT ordinal << 32 | tool ordinal, or EMPTY
+    private double[] values;                    //Jaccard value of the pair in the same slot
+    private int pairs;                          //number of pairs in the table
+
+    //constructor
+    private GoLookup(int[] depths, long[] keys, double[] values, int pairs){
+        this.depths = depths;
+        this.keys = keys;
+        this.values = values;
+        this.pairs = pairs;
+    }
+
+    /***
+     * A Builder collects the distinct GO:ID pairs of a run. Pairs are added from one thread.
+     */
+    public static class Builder{
+        private long[] keys = newTable(1024);
+        private int pairs = 0;
+
+        /***
+         * addPair adds a pair of GO:IDs, unless it was already added or both IDs are the same (an exact match).
+         * @param craft - dictionary ordinal of the CRAFT GO:ID
+         * @param tool - dictionary ordinal of the tool GO:ID
+         */
+        public void addPair(int craft, int tool){
+            if(craft == tool){
+                return;
+            }
+            //keep the table at most half full
+            if((pairs + 1) * 2 > keys.length){
+                long[] old = keys;
+                keys = newTable(old.length * 2);
+                for(long key: old){
+                    if(key != EMPTY){
+                        keys[slot(keys, key)] = key;
+                    }
+                }
+            }
+            long key = key(craft, tool);
+            int slot = slot(keys, key);
+            if(keys[slot] == EMPTY){
+                keys[slot] = key;
+                pairs++;
+            }
+        }
+
+        /***
+         * build resolves the level of every GO:ID in the dictionary and the Jaccard value of every pair.
+         * @param index - ontology index the dictionary is bound to
+         * @param goids - GO dictionary of the run
+         * @param pool - worker threads to resolve the pairs with, or null to resolve them on this thread
+         * @return lookup table
+         */
+        public GoLookup build(OntologyIndex index, GoDictionary goids, ExecutorService pool){
+            int[] depths = new int[goids.size()];
+            double[] values = new double[keys.length];
+            int ordinal;
+
+            for(int i = 0; i < depths.length; i++){
+                ordinal = goids.getIndexOrdinal(i);
+                depths[i] = ordinal < 0 ? 0 : index.getDepth(ordinal);
+            }
+
+            //each task fills its own range of slots
+            if(pool == null){
+                resolve(index, goids, values, 0, keys.length);
+            }
+            else{
+                List<Future<?>> futures = new ArrayList<>();
+                for(int from = 0; from < keys.length; from += CHUNK){
+                    final int start = from, end = Math.min(from + CHUNK, keys.length);
+                    futures.add(pool.submit(() -> resolve(index, goids, values, start, end)));
+                }
+                for(Future<?> future: futures){
+                    try{
+                        future.get();
+                    }catch(InterruptedException ex){
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while resolving GO:ID pairs", ex);
+                    }catch(ExecutionException ex){
+                        throw new IllegalStateException("Error: Could not resolve GO:ID pairs", ex.getCause());
+                    }
+                }
+            }
+            return new GoLookup(depths, keys, values, pairs);
+        }
+
+        private void resolve(OntologyIndex index, GoDictionary goids, double[] values, int from, int to){
+            int craft, tool;
+            for(int slot = from; slot < to; slot++){
+                if(keys[slot] != EMPTY){
+                    craft = (int) (keys[slot] >>> 32);
+                    tool = (int) keys[slot];
+                    values[slot] = index.jaccard(goids.getIndexOrdinal(craft), goids.getIndexOrdinal(tool), false);
+                }
+            }
+        }
+    }
+
+    private static long[] newTable(int capacity){
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static long key(int craft, int tool){
+        return ((long) craft << 32) | (tool & 0xFFFFFFFFL);
+    }
+
+    /***
+     * slot finds the slot of a key with linear probing: the slot holding the key, or the free slot it would go in.
+     * @param table - open-addressed table whose length is a power of two
+     * @param key - pair key
+     * @return slot of the key
+     */
+    private static int slot(long[] table, long key){
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int mask = table.length - 1, slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while(table[slot] != EMPTY && table[slot] != key){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /***
+     * jaccard gets the Jaccard value of a pair of GO:IDs.
+     * @param craft - dictionary ordinal of the CRAFT GO:ID
+     * @param tool - dictionary ordinal of the tool GO:ID
+     * @return Jaccard value, or NaN if the pair was not resolved
+     */
+    public double jaccard(int craft, int tool){
+        long key = key(craft, tool);
+        int slot = slot(keys, key);
+        return keys[slot] == key ? values[slot] : Double.NaN;
+    }
+
+    /***
+     * getDepth gets the level of a GO:ID (longest path to the root).
+     * @param id - dictionary ordinal of the GO:ID
+     * @return level, 0 if the GO:ID is not in the ontology, or -1 if it was added to the dictionary after the table
+     *         was built
+     */
+    public int getDepth(int id){
+        return id < depths.length ? depths[id] : -1;
+    }
+
+    //getters
+    public int getIDCount(){ return depths.length; }
+    public int getPairCount(){ return pairs; }
+}
@@ -0,0 +1,82 @@
+//Java imports
+import java.util.*;
+
+/**
+ * Purpose:         Histogram of ontology levels: the number of GO:IDs at each level, counted in a primitive int array
+ *                  indexed by level. Besides the levels from the root, -1 counts GO:IDs that are not in the ontology
+ *                  (obsolete) and -2 counts independent_continuant. Histograms filled separately (per thread or
+ *                  partition) are combined with merge.
+ */
+public class LevelHistogram {
+    private static final int MIN_LEVEL = -2;        //lowest level counted (independent_continuant)
+
+    private int[] counts = new int[32];             //level - MIN_LEVEL -> number of GO:IDs
+
+    /***
+     * add counts a GO:ID at a level.
+     * @param level - level of the GO:ID; -1 or -2 for GO:IDs without one
+     */
+    public void add(int level){
+        int i = level - MIN_LEVEL;
+        if(i < 0){
+            throw new IllegalArgumentException("Level " + level + " is below " + MIN_LEVEL);
+        }
+        if(i >= counts.length){
+            counts = Arrays.copyOf(counts, Math.max(i + 1, counts.length * 2));
+        }
+        counts[i]++;
+    }
+
+    /***
+     * merge adds the counts of another histogram.
+     * @param other - histogram to merge in; it is not changed
+     */
+    public void merge(LevelHistogram other){
+        if(other.counts.length > counts.length){
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for(int i = 0; i < other.counts.length; i++){
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /***
+     * get gets the number of GO:IDs at a level.
+     * @param level - level
+     * @return number of GO:IDs counted at the level
+     */
+    public int get(int level){
+        int i = level - MIN_LEVEL;
+        return i >= 0 && i < counts.length ? counts[i] : 0;
+    }
+
+    /***
+     * getMaxLevel gets the highest level with a GO:ID.
+     * @return highest level counted, or MIN_LEVEL - 1 if the histogram is empty
+     */
+    public int getMaxLevel(){
+        for(int i = counts.length - 1; i >= 0; i--){
+            if(counts[i] > 0){
+                return i + MIN_LEVEL;
+            }
+        }
+        return MIN_LEVEL - 1;
+    }
+
+    /***
+     * toMap gets the levels that have GO:IDs and their counts.
+     * @return level -> number of GO:IDs, in level order
+     */
+    public Map<Integer, Integer> toMap(){
+        Map<Integer, Integer> levels = new LinkedHashMap<>();
+        for(int i = 0; i < counts.length; i++){
+            if(counts[i] > 0){
+                levels.put(i + MIN_LEVEL, counts[i]);
+            }
+        }
+        return levels;
+    }
+
+    //getters
+    public static int getMinLevel(){ return MIN_LEVEL; }
+}
@@ -0,0 +1,515 @@
+//Java imports
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+//OWL API
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.*;
+
+/**
+ * Purpose:         Read-only index over the classified GO hierarchy. Every class is given a dense ordinal, its direct
+ *                  superclasses are kept as ordinals, and the longest path from each class to the root is computed
+ *                  once so ontology levels become array lookups. The superclass closure of each class is stored as a
+ *                  sorted ordinal set (the array container of a compressed bitmap), so Jaccard values are computed by
+ *                  merging two small int ranges without allocating. The index can be saved as a binary snapshot
+ *                  keyed by the ontology file's checksum and memory-mapped on later runs, which skips parsing and
+ *                  classifying the ontology. The index is never modified after it is built or loaded, so it can be
+ *                  queried from any number of threads without locking, unlike the ELK reasoner it is built from.
+ */
+public class OntologyIndex {
+    //short forms of the roots for biological process, cellular component and molecular function
+    private static final Set<String> BRANCH_ROOTS = new HashSet<>(Arrays.asList("GO_0008150", "GO_0005575",
+            "GO_0003674"));
+    private static final int SNAPSHOT_MAGIC = 0x474F4958;      //"GOIX"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private String[] ids;                       //IRI short form for each ordinal
+    private Map<String, Integer> ordinals;      //IRI short form -> ordinal
+    private int[] parentOffsets;                //start of each ordinal's direct superclasses in parents
+    private int[] parents;                      //direct superclass ordinals, grouped by class
+    private boolean[] underThing;               //true if Thing is a direct superclass
+    private int[] depths;                       //longest path to the root for each ordinal
+    private int[] ancestorOffsets;              //start of each ordinal's superclass closure in ancestors
+    private int[] ancestors;                    //sorted superclass ordinals (Thing excluded), grouped by class
+
+    //constructor
+    private OntologyIndex(String[] ids, int[] parentOffsets, int[] parents, boolean[] underThing){
+        this.ids = ids;
+        this.ordinals = new HashMap<>(ids.length * 2);
+        for(int i = 0; i < ids.length; i++){
+            this.ordinals.put(ids[i], i);
+        }
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        this.underThing = underThing;
+        int[] order = topologicalOrder();
+        this.depths = calculateDepths(order);
+        calculateAncestors(order);
+    }
+
+    //constructor for a loaded snapshot
+    private OntologyIndex(String[] ids, int[] parentOffsets, int[] parents, boolean[] underThing, int[] depths,
+                          int[] ancestorOffsets, int[] ancestors){
+        this.ids = ids;
+        this.ordinals = new HashMap<>(ids.length * 2);
+        for(int i = 0; i < ids.length; i++){
+            this.ordinals.put(ids[i], i);
+        }
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        this.underThing = underThing;
+        this.depths = depths;
+        this.ancestorOffsets = ancestorOffsets;
+        this.ancestors = ancestors;
+    }
+
+    /***
+     * build indexes every class in the ontology (and its imports) using the direct superclasses from the reasoner.
+     * @param ontology - GO ontology
+     * @param reasoner - reasoner that has precomputed the class hierarchy for the ontology
+     * @return index over the classified hierarchy
+     */
+    public static OntologyIndex build(OWLOntology ontology, OWLReasoner reasoner){
+        return build(ontology, reasoner, null);
+    }
+
+    /***
+     * build indexes every class in the ontology, recording the count and latency of the reasoner queries.
+     * @param ontology - GO ontology
+     * @param reasoner - reasoner that has precomputed the class hierarchy for the ontology
+     * @param metrics - metrics of the run, or null
+     * @return index over the classified hierarchy
+     */
+    public static OntologyIndex build(OWLOntology ontology, OWLReasoner reasoner, RunMetrics metrics){
+        String query = RunMetrics.label("query", "getSuperClasses");
+        NodeSet<OWLClass> supers;
+        long start;
+        List<OWLClass> classes = new ArrayList<>();
+        Map<String, Integer> ordinals = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        String id;
+
+        //assign ordinals in IRI order so the index is the same on every run
+        for(OWLClass owlClass: ontology.getClassesInSignature(Imports.INCLUDED)){
+            if(!owlClass.isOWLThing() && !owlClass.isOWLNothing()){
+                classes.add(owlClass);
+            }
+        }
+        classes.sort(Comparator.comparing(c -> c.getIRI().toString()));
+        for(OWLClass owlClass: classes){
+            id = owlClass.getIRI().getShortForm();
+            if(!ordinals.containsKey(id)){
+                ordinals.put(id, ids.size());
+                ids.add(id);
+            }
+        }
+
+        //pull the direct superclasses of each class
+        int[] parentOffsets = new int[ids.size() + 1];
+        boolean[] underThing = new boolean[ids.size()];
+        List<Set<Integer>> directs = new ArrayList<>(ids.size());
+        for(int i = 0; i < ids.size(); i++){
+            directs.add(new LinkedHashSet<>());
+        }
+        for(OWLClass owlClass: classes){
+            int ordinal = ordinals.get(owlClass.getIRI().getShortForm());
+            start = System.nanoTime();
+            supers = reasoner.getSuperClasses(owlClass, true);
+            if(metrics != null){
+                metrics.observe("reasoner_query_seconds", "Latency of reasoner queries", query,
+                        (System.nanoTime() - start) / 1e9);
+            }
+            for(Node<OWLClass> parent: supers){
+                for(OWLClass p: parent){
+                    if(p.isOWLThing()){
+                        underThing[ordinal] = true;
+                    }
+                    else{
+                        Integer p_ordinal = ordinals.get(p.getIRI().getShortForm());
+                        if(p_ordinal != null && p_ordinal != ordinal){
+                            directs.get(ordinal).add(p_ordinal);
+                        }
+                    }
+                }
+            }
+        }
+        int total = 0;
+        for(int i = 0; i < directs.size(); i++){
+            parentOffsets[i] = total;
+            total += directs.get(i).size();
+        }
+        parentOffsets[directs.size()] = total;
+        int[] parents = new int[total];
+        int index = 0;
+        for(Set<Integer> direct: directs){
+            for(int p: direct){
+                parents[index++] = p;
+            }
+        }
+
+        return new OntologyIndex(ids.toArray(new String[0]), parentOffsets, parents, underThing);
+    }
+
+    /***
+     * checksum calculates the SHA-256 checksum of the ontology file, used to key snapshots.
+     * @param ontology - OWL file that contains the ontology
+     * @return hex checksum of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String checksum(File ontology) throws IOException{
+        MessageDigest digest;
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException ex){
+            throw new IOException("SHA-256 not available", ex);
+        }
+        try(InputStream in = new FileInputStream(ontology)){
+            while((read = in.read(buffer)) != -1){
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for(byte b: digest.digest()){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /***
+     * save writes the index to a binary snapshot file. The snapshot is written atomically (see AtomicFile), so an
+     * interrupted run never leaves a partial snapshot behind.
+     * @param snapshot - snapshot file to write
+     * @param checksum - checksum of the ontology file the index was built from
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save(File snapshot, String checksum) throws IOException{
+        AtomicFile.write(snapshot, out -> {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeUTF(checksum);
+            //class IDs
+            out.writeInt(ids.length);
+            for(String id: ids){
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            //direct superclasses, levels, and superclass closures
+            writeInts(out, parentOffsets);
+            writeInts(out, parents);
+            for(boolean b: underThing){
+                out.writeByte(b ? 1 : 0);
+            }
+            writeInts(out, depths);
+            writeInts(out, ancestorOffsets);
+            writeInts(out, ancestors);
+        });
+    }
+
+    /***
+     * load memory-maps an index snapshot file.
+     * @param snapshot - snapshot file to read
+     * @param checksum - checksum of the current ontology file
+     * @return index from the snapshot, or null if there is no snapshot, it was built from a different ontology, or it
+     *         is truncated or corrupt (so the index is built again)
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static OntologyIndex load(File snapshot, String checksum) throws IOException{
+        if(!snapshot.isFile()){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION){
+                return null;
+            }
+            //same layout as DataOutputStream.writeUTF
+            byte[] stored = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(stored);
+            if(!new String(stored, StandardCharsets.UTF_8).equals(checksum)){
+                return null;
+            }
+            //class IDs
+            String[] ids = new String[buffer.getInt()];
+            for(int i = 0; i < ids.length; i++){
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                ids[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            //direct superclasses, levels, and superclass closures
+            int[] parentOffsets = readInts(buffer);
+            int[] parents = readInts(buffer);
+            boolean[] underThing = new boolean[ids.length];
+            for(int i = 0; i < ids.length; i++){
+                underThing[i] = buffer.get() == 1;
+            }
+            int[] depths = readInts(buffer);
+            int[] ancestorOffsets = readInts(buffer);
+            int[] ancestors = readInts(buffer);
+            return new OntologyIndex(ids, parentOffsets, parents, underThing, depths, ancestorOffsets, ancestors);
+        }catch(RuntimeException ex){
+            //truncated or corrupt snapshot
+            System.out.println("Error: Cannot read ontology snapshot " + snapshot);
+            return null;
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException{
+        out.writeInt(values.length);
+        for(int v: values){
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer){
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+
+    /***
+     * topologicalOrder orders the classes so every class comes after all of its superclasses (Kahn's algorithm), so
+     * values that depend on superclasses can be computed in one pass without recursion.
+     * @return ordinals in topological order
+     */
+    private int[] topologicalOrder(){
+        int size = ids.length;
+        int[] remaining = new int[size];            //superclasses not yet visited for each class
+        int[] childOffsets = new int[size + 1];
+        int[] children = new int[parents.length];
+        int[] queue = new int[size];
+        int head = 0, tail = 0, child;
+
+        //invert superclass lists into subclass lists
+        for(int p: parents){
+            childOffsets[p + 1]++;
+        }
+        for(int i = 0; i < size; i++){
+            childOffsets[i + 1] += childOffsets[i];
+            remaining[i] = parentOffsets[i + 1] - parentOffsets[i];
+        }
+        int[] fill = Arrays.copyOf(childOffsets, size);
+        for(int i = 0; i < size; i++){
+            for(int j = parentOffsets[i]; j < parentOffsets[i + 1]; j++){
+                children[fill[parents[j]]++] = i;
+            }
+        }
+
+        //start with classes that have no superclasses besides Thing
+        for(int i = 0; i < size; i++){
+            if(remaining[i] == 0){
+                queue[tail++] = i;
+            }
+        }
+        while(head < tail){
+            int current = queue[head++];
+            for(int j = childOffsets[current]; j < childOffsets[current + 1]; j++){
+                child = children[j];
+                if(--remaining[child] == 0){
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        //a classified hierarchy has no cycles, but append any leftover classes rather than fail
+        if(tail < size){
+            for(int i = 0; i < size; i++){
+                if(remaining[i] > 0){
+                    queue[tail++] = i;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /***
+     * calculateDepths computes the longest path from each class to the root. A class directly under Thing has a depth
+     * of 0. Otherwise its depth is one more than the deepest superclass, where the BP, CC and MF roots end the path
+     * and count as 0.
+     * @param order - ordinals in topological order
+     * @return depth for each ordinal
+     */
+    private int[] calculateDepths(int[] order){
+        int[] depth = new int[ids.length];
+        for(int ordinal: order){
+            depth[ordinal] = levelFromParents(ordinal, depth);
+        }
+        return depth;
+    }
+
+    /***
+     * calculateAncestors computes the superclass closure of each class as the sorted union of its direct superclasses
+     * and their closures.
+     * @param order - ordinals in topological order
+     */
+    private void calculateAncestors(int[] order){
+        int[][] closures = new int[ids.length][];
+        int[] merged = new int[16];
+        int size, total = 0, p;
+
+        for(int ordinal: order){
+            size = 0;
+            for(int j = parentOffsets[ordinal]; j < parentOffsets[ordinal + 1]; j++){
+                p = parents[j];
+                int[] closure = closures[p] == null ? new int[0] : closures[p];
+                if(merged.length < size + closure.length + 1){
+                    merged = Arrays.copyOf(merged, Math.max(merged.length * 2, size + closure.length + 1));
+                }
+                System.arraycopy(closure, 0, merged, size, closure.length);
+                size += closure.length;
+                merged[size++] = p;
+            }
+            //sort and drop duplicates from superclasses shared through several paths
+            Arrays.sort(merged, 0, size);
+            int unique = 0;
+            for(int j = 0; j < size; j++){
+                if(unique == 0 || merged[unique - 1] != merged[j]){
+                    merged[unique++] = merged[j];
+                }
+            }
+            closures[ordinal] = Arrays.copyOf(merged, unique);
+            total += unique;
+        }
+
+        //flatten closures into one array
+        this.ancestorOffsets = new int[ids.length + 1];
+        this.ancestors = new int[total];
+        total = 0;
+        for(int i = 0; i < ids.length; i++){
+            ancestorOffsets[i] = total;
+            System.arraycopy(closures[i], 0, ancestors, total, closures[i].length);
+            total += closures[i].length;
+        }
+        ancestorOffsets[ids.length] = total;
+    }
+
+    /***
+     * levelFromParents computes the depth of a class from the depths of its direct superclasses.
+     * @param ordinal - class to compute the depth for
+     * @param depth - depths computed so far
+     * @return depth of the class
+     */
+    private int levelFromParents(int ordinal, int[] depth){
+        int maxLevel = 0, p;
+        if(underThing[ordinal]){
+            //hits GO root
+            return 0;
+        }
+        for(int j = parentOffsets[ordinal]; j < parentOffsets[ordinal + 1]; j++){
+            p = parents[j];
+            //BP, CC, and MF roots end the path
+            if(!isBranchRoot(p) && depth[p] > maxLevel){
+                maxLevel = depth[p];
+            }
+        }
+        return maxLevel + 1;
+    }
+
+    private boolean isBranchRoot(int ordinal){
+        return BRANCH_ROOTS.contains(ids[ordinal]);
+    }
+
+    /***
+     * getOrdinal returns the dense ordinal for an IRI short form (e.g. GO_0003675).
+     * @param id - IRI short form
+     * @return ordinal, or -1 if the class is not in the ontology
+     */
+    public int getOrdinal(String id){
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /***
+     * getDepth returns the longest path from a class to the root.
+     * @param id - IRI short form (e.g. GO_0003675)
+     * @return depth of the class, or 0 if the class is not in the ontology
+     */
+    public int getDepth(String id){
+        int ordinal = getOrdinal(id);
+        return ordinal < 0 ? 0 : depths[ordinal];
+    }
+
+    /***
+     * jaccard calculates the Jaccard value of the superclasses of two classes. Thing is excluded from both sets, and
+     * the two classes themselves are added to the union.
+     * @param craftID - IRI short form of the CRAFT class (e.g. GO_0003675)
+     * @param toolID - IRI short form of the tool class
+     * @return Jaccard value for the pair
+     */
+    public double jaccard(String craftID, String toolID){
+        return jaccard(getOrdinal(craftID), getOrdinal(toolID), craftID.equals(toolID));
+    }
+
+    /***
+     * jaccard calculates the Jaccard value of the superclasses of two classes given by their ordinals.
+     * @param craft - ordinal of the CRAFT class, or -1 if it is not in the ontology
+     * @param tool - ordinal of the tool class, or -1 if it is not in the ontology
+     * @param same - true if both IDs are the same (needed when neither is in the ontology)
+     * @return Jaccard value for the pair
+     */
+    public double jaccard(int craft, int tool, boolean same){
+        int inbetween = 0, all;
+        int a = 0, aEnd = 0, b = 0, bEnd = 0;
+
+        if(craft >= 0){
+            a = ancestorOffsets[craft];
+            aEnd = ancestorOffsets[craft + 1];
+        }
+        if(tool >= 0){
+            b = ancestorOffsets[tool];
+            bEnd = ancestorOffsets[tool + 1];
+        }
+        all = (aEnd - a) + (bEnd - b);
+
+        //count the intersection by merging the two sorted closures
+        while(a < aEnd && b < bEnd){
+            if(ancestors[a] < ancestors[b]){
+                a++;
+            }
+            else if(ancestors[a] > ancestors[b]){
+                b++;
+            }
+            else{
+                inbetween++;
+                a++;
+                b++;
+            }
+        }
+        all -= inbetween;
+
+        //add originating IDs into the union unless already in it
+        if(!(tool >= 0 && craft >= 0 && isAncestor(craft, tool))){
+            all++;
+        }
+        if(!same && !(tool >= 0 && craft >= 0 && isAncestor(tool, craft))){
+            all++;
+        }
+        return (double) inbetween / (double) all;
+    }
+
+    /***
+     * isAncestor checks if a class is in the superclass closure of another class.
+     * @param ancestor - possible superclass ordinal
+     * @param ordinal - class ordinal
+     * @return true if ancestor is a superclass of the class
+     */
+    public boolean isAncestor(int ancestor, int ordinal){
+        return Arrays.binarySearch(ancestors, ancestorOffsets[ordinal], ancestorOffsets[ordinal + 1], ancestor) >= 0;
+    }
+
+    //getters
+    public int getDepth(int ordinal){ return depths[ordinal]; }
+    public String getID(int ordinal){ return ids[ordinal]; }
+    public int size(){ return ids.length; }
+}
@@ -0,0 +1,263 @@
+//Java imports
+import java.io.*;
+import java.util.*;
+
+/**
+ * Purpose:         On-disk store of the per-paper scoring results for one tool. Each paper's result is kept with a key
+ *                  built from the content hashes of the tool's and CRAFT's annotations for the paper, the version
+ *                  of the ontology, and the version of the scoring code, so a rerun only rescores the papers whose
+ *                  inputs or scoring changed and re-aggregates the rest from the store. Results are read and stored
+ *                  from the paper worker threads, so access is synchronized; the store is written back in one go once
+ *                  the tool has been scored.
+ */
+public class ResultCache {
+    private static final int CACHE_MAGIC = 0x474F5243;      //"GORC"
+    private static final int CACHE_VERSION = 1;             //layout of the store
+    //version of the scoring code, part of every key: bump it whenever matching, Jaccard values, or bucketing change,
+    //so results scored by older code are not reused (2: discontinuous spans are matched span by span; 3: lenient
+    //new annotations are counted as tool annotations minus matches)
+    private static final int SCORER_VERSION = 3;
+
+    private File file;                                              //store for the tool
+    private Map<String, Entry> stored = new HashMap<>();            //paper -> result read from the store
+    private Map<String, Entry> current = new TreeMap<>();           //paper -> result of this run
+    private int hits = 0;                                           //papers taken from the store
+    private int misses = 0;                                         //papers scored in this run
+
+    /***
+     * A PaperResult holds the scores of a tool for a single paper: exact, partial, new, and false negative counts,
+     * the GO:ID pairs of the partial matches, the Jaccard values of the matches, and the Jaccard values bucketed by
+     * the word count of the CRAFT reference term.
+     */
+    public static class PaperResult{
+        private int[] counts;                           //exacts, partials, new annotations, false negatives
+        private String[] craftIDs;                      //CRAFT GO:ID of each partial match
+        private String[] toolIDs;                       //tool GO:ID of each partial match
+        private double[] jaccards;                      //Jaccard values of the matches; null if there are none
+        private Map<Integer, double[]> buckets;         //word count -> Jaccard values
+
+        //constructor
+        public PaperResult(int[] counts, String[] craftIDs, String[] toolIDs, double[] jaccards,
+                           Map<Integer, double[]> buckets){
+            this.counts = counts;
+            this.craftIDs = craftIDs;
+            this.toolIDs = toolIDs;
+            this.jaccards = jaccards;
+            this.buckets = buckets;
+        }
+
+        /***
+     * readLength reads the length of an array and checks it against the size of the store, so a corrupt length is
+     * reported instead of allocating a negative or huge array.
+     * @param in - stream of the store
+     * @param limit - size of the store in bytes; every element takes at least one byte
+     * @return length of the array
+     * @throws IOException if the length cannot be read or is out of range
+     */
+    private static int readLength(DataInputStream in, long limit) throws IOException{
+        return checkLength(in.readInt(), limit);
+    }
+
+    private static int checkLength(int length, long limit) throws IOException{
+        if(length < 0 || length > limit){
+            throw new IOException("Corrupt array length " + length);
+        }
+        return length;
+    }
+
+    //getters
+        public int getExacts(){ return counts[0]; }
+        public int getPartials(){ return counts[1]; }
+        public int getNewAnnotations(){ return counts[2]; }
+        public int getFalseNegatives(){ return counts[3]; }
+        public String[] getCraftIDs(){ return craftIDs; }
+        public String[] getToolIDs(){ return toolIDs; }
+        public double[] getJaccards(){ return jaccards; }
+        public Map<Integer, double[]> getBuckets(){ return buckets; }
+    }
+
+    private static class Entry{
+        private String key;
+        private PaperResult result;
+
+        private Entry(String key, PaperResult result){
+            this.key = key;
+            this.result = result;
+        }
+    }
+
+    /***
+     * ResultCache opens the store of a tool. A missing, unreadable, corrupt, or outdated store is treated as empty.
+     * @param directory - directory holding the stores
+     * @param tool - name of the tool
+     */
+    public ResultCache(File directory, String tool){
+        this.file = new File(directory, tool + ".results");
+        if(!file.isFile()){
+            return;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION){
+                return;
+            }
+            int entries = in.readInt();
+            for(int i = 0; i < entries; i++){
+                String paper = in.readUTF();
+                String key = in.readUTF();
+                stored.put(paper, new Entry(key, readResult(in, file.length())));
+            }
+        }catch(IOException | RuntimeException ex){
+            //unreadable, truncated, or corrupt store
+            System.out.println("Error: Cannot read result cache " + file);
+            stored.clear();
+        }
+    }
+
+    /***
+     * key builds the key a paper's result is stored under, including the version of the scoring code.
+     * @param toolHash - content hash of the tool's annotations for the paper
+     * @param craftHash - content hash of CRAFT's annotations for the paper
+     * @param ontologyVersion - checksum of the ontology the result was scored with
+     * @return key for the paper's result
+     */
+    public static String key(String toolHash, String craftHash, String ontologyVersion){
+        return toolHash + ":" + craftHash + ":" + ontologyVersion + ":" + SCORER_VERSION;
+    }
+
+    /***
+     * get retrieves the stored result of a paper.
+     * @param paper - paper ID (filename)
+     * @param key - key of the paper's current inputs
+     * @return stored result, or null if the paper was not stored with the same inputs
+     */
+    public synchronized PaperResult get(String paper, String key){
+        Entry entry = stored.get(paper);
+        if(entry == null || !entry.key.equals(key)){
+            misses++;
+            return null;
+        }
+        hits++;
+        current.put(paper, entry);
+        return entry.result;
+    }
+
+    /***
+     * put stores the result of a paper scored in this run.
+     * @param paper - paper ID (filename)
+     * @param key - key of the paper's current inputs
+     * @param result - scores for the paper
+     */
+    public synchronized void put(String paper, String key, PaperResult result){
+        current.put(paper, new Entry(key, result));
+    }
+
+    /***
+     * save writes the results of this run to the store. Papers that were not scored or looked up in this run are
+     * dropped. The store is written atomically (see AtomicFile), so an interrupted run keeps the previous store.
+     */
+    public synchronized void save(){
+        File directory = file.getParentFile();
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()){
+            System.out.println("Error: Could not create directory " + directory);
+            return;
+        }
+        try{
+            AtomicFile.write(file, out -> {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(current.size());
+                for(Map.Entry<String, Entry> e: current.entrySet()){
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(e.getValue().key);
+                    writeResult(out, e.getValue().result);
+                }
+            });
+        }catch(IOException ex){
+            System.out.println("Error: Could not write to file " + file);
+        }
+    }
+
+    private static void writeResult(DataOutputStream out, PaperResult result) throws IOException{
+        for(int count: result.counts){
+            out.writeInt(count);
+        }
+        out.writeInt(result.craftIDs.length);
+        for(int i = 0; i < result.craftIDs.length; i++){
+            out.writeUTF(result.craftIDs[i]);
+            out.writeUTF(result.toolIDs[i]);
+        }
+        writeDoubles(out, result.jaccards);
+        out.writeInt(result.buckets.size());
+        for(Map.Entry<Integer, double[]> bucket: result.buckets.entrySet()){
+            out.writeInt(bucket.getKey());
+            writeDoubles(out, bucket.getValue());
+        }
+    }
+
+    private static PaperResult readResult(DataInputStream in, long limit) throws IOException{
+        int[] counts = new int[4];
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = in.readInt();
+        }
+        String[] craftIDs = new String[readLength(in, limit)];
+        String[] toolIDs = new String[craftIDs.length];
+        for(int i = 0; i < craftIDs.length; i++){
+            craftIDs[i] = in.readUTF();
+            toolIDs[i] = in.readUTF();
+        }
+        double[] jaccards = readDoubles(in, limit);
+        Map<Integer, double[]> buckets = new HashMap<>();
+        int size = in.readInt();
+        for(int i = 0; i < size; i++){
+            buckets.put(in.readInt(), readDoubles(in, limit));
+        }
+        return new PaperResult(counts, craftIDs, toolIDs, jaccards, buckets);
+    }
+
+    //arrays are written with their length; -1 stands for null
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException{
+        if(values == null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for(double v: values){
+            out.writeDouble(v);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, long limit) throws IOException{
+        int length = in.readInt();
+        if(length == -1){
+            return null;
+        }
+        double[] values = new double[checkLength(length, limit)];
+        for(int i = 0; i < length; i++){
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /***
+     * readLength reads the length of an array and checks it against the size of the store, so a corrupt length is
+     * reported instead of allocating a negative or huge array.
+     * @param in - stream of the store
+     * @param limit - size of the store in bytes; every element takes at least one byte
+     * @return length of the array
+     * @throws IOException if the length cannot be read or is out of range
+     */
+    private static int readLength(DataInputStream in, long limit) throws IOException{
+        return checkLength(in.readInt(), limit);
+    }
+
+    private static int checkLength(int length, long limit) throws IOException{
+        if(length < 0 || length > limit){
+            throw new IOException("Corrupt array length " + length);
+        }
+        return length;
+    }
+
+    //getters
+    public synchronized int getHits(){ return hits; }
+    public synchronized int getMisses(){ return misses; }
+}
@@ -0,0 +1,194 @@
+//Java imports
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.*;
+
+/**
+ * Purpose:         Collects the metrics of an evaluation run: wall-clock and CPU time per stage, counters (annotations
+ *                  parsed, ontology queries, cache hits and misses), gauges, and latency histograms. The metrics are
+ *                  written in the Prometheus text format, so a run can be compared with earlier runs or scraped by a
+ *                  node exporter. Metrics can be recorded from any thread.
+ */
+public class RunMetrics {
+    //upper bounds of the latency histogram buckets, in seconds
+    private static final double[] LATENCY_BUCKETS = {1e-6, 1e-5, 1e-4, 1e-3, 1e-2, 1e-1, 1.0, 10.0};
+
+    private Map<String, Family> families = new LinkedHashMap<>();       //metric name -> its series
+
+    /***
+     * A Family holds every labelled series of one metric.
+     */
+    private static class Family{
+        private String type;                                            //counter, gauge, or histogram
+        private String help;                                            //description of the metric
+        //labels -> value (histograms: buckets, sum, count)
+        private Map<String, double[]> series = new LinkedHashMap<>();
+
+        private Family(String type, String help){
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    /***
+     * A Stage measures the wall-clock and CPU time of one stage of the run, from its creation until end is called.
+     * CPU time is taken for the whole process, so work done by the paper worker threads is included.
+     */
+    public class Stage{
+        private String labels;          //labels of the stage's series
+        private long wall;              //wall-clock time at the start, in nanoseconds
+        private long cpu;               //process CPU time at the start, in nanoseconds
+
+        private Stage(String name, String tool){
+            this.labels = label("stage", name) + (tool == null ? "" : "," + label("tool", tool));
+            this.wall = System.nanoTime();
+            this.cpu = processCpuTime();
+        }
+
+        /***
+         * end records the stage's wall-clock and CPU time.
+         */
+        public void end(){
+            double wallSeconds = (System.nanoTime() - wall) / 1e9;
+            double cpuSeconds = (processCpuTime() - cpu) / 1e9;
+            count("stage_wall_seconds", "Wall-clock time spent in each stage", labels, wallSeconds);
+            count("stage_cpu_seconds", "Process CPU time spent in each stage", labels, cpuSeconds);
+        }
+    }
+
+    /***
+     * stage starts timing a stage of the run.
+     * @param name - stage name
+     * @param tool - tool the stage works on, or null
+     * @return running stage; call end when the stage is done
+     */
+    public Stage stage(String name, String tool){
+        return new Stage(name, tool);
+    }
+
+    /***
+     * count adds to a counter.
+     * @param name - metric name
+     * @param help - description of the metric
+     * @param labels - labels of the series (see label), or an empty string
+     * @param delta - amount to add
+     */
+    public synchronized void count(String name, String help, String labels, double delta){
+        series(name, "counter", help, labels, 1)[0] += delta;
+    }
+
+    /***
+     * set sets a gauge.
+     * @param name - metric name
+     * @param help - description of the metric
+     * @param labels - labels of the series (see label), or an empty string
+     * @param value - value of the gauge
+     */
+    public synchronized void set(String name, String help, String labels, double value){
+        series(name, "gauge", help, labels, 1)[0] = value;
+    }
+
+    /***
+     * observe records a latency in a histogram.
+     * @param name - metric name
+     * @param help - description of the metric
+     * @param labels - labels of the series (see label), or an empty string
+     * @param seconds - observed latency
+     */
+    public synchronized void observe(String name, String help, String labels, double seconds){
+        double[] histogram = series(name, "histogram", help, labels, LATENCY_BUCKETS.length + 2);
+        for(int i = 0; i < LATENCY_BUCKETS.length; i++){
+            if(seconds <= LATENCY_BUCKETS[i]){
+                histogram[i]++;
+                break;
+            }
+        }
+        histogram[LATENCY_BUCKETS.length] += seconds;
+        histogram[LATENCY_BUCKETS.length + 1]++;
+    }
+
+    private double[] series(String name, String type, String help, String labels, int length){
+        Family family = families.computeIfAbsent(name, k -> new Family(type, help));
+        return family.series.computeIfAbsent(labels, k -> new double[length]);
+    }
+
+    /***
+     * label formats a label for a series.
+     * @param key - label name
+     * @param value - label value
+     * @return label in the Prometheus text format
+     */
+    public static String label(String key, String value){
+        return key + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /***
+     * processCpuTime gets the CPU time used by all threads of the process.
+     * @return CPU time in nanoseconds, or 0 if the JVM does not report it
+     */
+    private static long processCpuTime(){
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if(os instanceof com.sun.management.OperatingSystemMXBean){
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    /***
+     * write writes every metric, and the peak heap usage of the run, to a file in the Prometheus text format.
+     * @param filename - output file name
+     */
+    public synchronized void write(File filename){
+        long peak = 0;
+        double[] values;
+        String labels;
+        for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP){
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        set("heap_peak_bytes", "Peak heap usage, summed over the heap memory pools", "", peak);
+
+        try(PrintWriter writer = new PrintWriter(filename)){
+            for(Map.Entry<String, Family> family: families.entrySet()){
+                String name = "annotation_comparison_" + family.getKey();
+                writer.println("# HELP " + name + " " + family.getValue().help);
+                writer.println("# TYPE " + name + " " + family.getValue().type);
+                for(Map.Entry<String, double[]> series: family.getValue().series.entrySet()){
+                    labels = series.getKey();
+                    values = series.getValue();
+                    if(!family.getValue().type.equals("histogram")){
+                        writer.println(name + braces(labels) + " " + values[0]);
+                        continue;
+                    }
+                    //buckets are cumulative
+                    double cumulative = 0;
+                    for(int i = 0; i < LATENCY_BUCKETS.length; i++){
+                        cumulative += values[i];
+                        writer.println(name + "_bucket" + braces(join(labels, label("le",
+                                Double.toString(LATENCY_BUCKETS[i])))) + " " + cumulative);
+                    }
+                    writer.println(name + "_bucket" + braces(join(labels, label("le", "+Inf"))) + " "
+                            + values[LATENCY_BUCKETS.length + 1]);
+                    writer.println(name + "_sum" + braces(labels) + " " + values[LATENCY_BUCKETS.length]);
+                    writer.println(name + "_count" + braces(labels) + " " + values[LATENCY_BUCKETS.length + 1]);
+                }
+            }
+        }catch(FileNotFoundException ex){
+            System.out.println("Error: Could not write to file " + filename);
+        }
+    }
+
+    private static String braces(String labels){
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String join(String labels, String label){
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Purpose:         Running count, mean, and variance of a series of values, updated one value at a time with Welford's
+ *                  method. Statistics can be taken over any number of values without keeping them, and the update does
+ *                  not lose precision the way summing squares does. Accumulators filled separately (per paper, thread,
+ *                  or partition) are combined with merge; merging them in a fixed order gives the same numbers however
+ *                  the values were split up.
+ */
+public class RunningStats {
+    private long count = 0;             //number of values added
+    private double mean = 0.0;          //mean of the values added
+    private double m2 = 0.0;            //sum of squared differences from the mean
+
+    /***
+     * add adds a value.
+     * @param value - value to add
+     */
+    public void add(double value){
+        double delta = value - mean;
+        count++;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /***
+     * merge adds the values of another accumulator, as if each of its values had been added to this one.
+     * @param other - accumulator to merge in; it is not changed
+     */
+    public void merge(RunningStats other){
+        if(other.count == 0){
+            return;
+        }
+        if(count == 0){
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /***
+     * getMean gets the mean of the values.
+     * @return mean, or NaN if no values were added
+     */
+    public double getMean(){
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /***
+     * getVariance gets the sample variance of the values (divided by count - 1).
+     * @return sample variance, or NaN if fewer than two values were added
+     */
+    public double getVariance(){
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /***
+     * getStandardDeviation gets the sample standard deviation of the values.
+     * @return sample standard deviation, or NaN if fewer than two values were added
+     */
+    public double getStandardDeviation(){
+        return Math.sqrt(getVariance());
+    }
+
+    /***
+     * getTwoStandardErrors gets two standard errors of the mean: 2*(std(values)/sqrt(count)).
+     * @return two standard errors of the mean, or NaN if fewer than two values were added
+     */
+    public double getTwoStandardErrors(){
+        return 2 * (getStandardDeviation() / Math.sqrt(count));
+    }
+
+    //getters
+    public long getCount(){ return count; }
+}
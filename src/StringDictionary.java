@@ -0,0 +1,92 @@
+//Java imports
+import java.util.*;
+
+/**
+ * Purpose:         Dictionary encoding for the strings of the annotation stores (GO:IDs, terms, and reference terms).
+ *                  Each distinct string is stored once and given a dense int code, so annotations hold ints and equal
+ *                  strings have equal codes. The dictionary is shared by every store of a run, so codes can be compared
+ *                  across CRAFT and the tools. The word count of each string is counted once when it is added, so
+ *                  reference terms are bucketed without splitting them again. Adding strings is synchronized; lookups
+ *                  by code are lock-free, because an entry is written before its code is handed out.
+ */
+public class StringDictionary {
+    private Map<String, Integer> codes = new HashMap<>();           //string -> code
+    private volatile String[] strings = new String[1024];           //code -> string
+    private volatile int[] wordCounts = new int[1024];              //code -> number of words in the string
+    private int size = 0;                                           //number of strings
+
+    /***
+     * encode gets the code of a string, adding the string if it has not been seen yet.
+     * @param value - string to encode
+     * @return code of the string
+     */
+    public synchronized int encode(String value){
+        Integer code = codes.get(value);
+        if(code == null){
+            code = size;
+            if(size == strings.length){
+                String[] grownStrings = Arrays.copyOf(strings, size * 2);
+                int[] grownCounts = Arrays.copyOf(wordCounts, size * 2);
+                grownStrings[size] = value;
+                grownCounts[size] = countWords(value);
+                wordCounts = grownCounts;
+                strings = grownStrings;
+            }
+            else{
+                wordCounts[size] = countWords(value);
+                strings[size] = value;
+            }
+            size++;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /***
+     * countWords counts the words of a string as value.split(" ").length does, without splitting it.
+     * @param value - string to count the words of
+     * @return number of words
+     */
+    private static int countWords(String value){
+        int end = value.length(), words = 1;
+        //trailing separators do not start a word
+        while(end > 0 && value.charAt(end - 1) == ' '){
+            end--;
+        }
+        if(end == 0){
+            return value.isEmpty() ? 1 : 0;
+        }
+        for(int i = 0; i < end; i++){
+            if(value.charAt(i) == ' '){
+                words++;
+            }
+        }
+        return words;
+    }
+
+    /***
+     * decode gets the string of a code.
+     * @param code - code returned by encode
+     * @return string of the code
+     */
+    public String decode(int code){
+        return strings[code];
+    }
+
+    /***
+     * wordCount gets the number of words in the string of a code (split on single spaces).
+     * @param code - code returned by encode
+     * @return number of words
+     */
+    public int wordCount(int code){
+        return wordCounts[code];
+    }
+
+    /***
+     * size gets the number of strings in the dictionary; codes are below this number.
+     * @return number of strings
+     */
+    public synchronized int size(){
+        return size;
+    }
+}
@@ -0,0 +1,108 @@
+//Java imports
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.*;
+
+/**
+ * Purpose:         An annotation tool that is evaluated against the CRAFT corpus: its name, the directory holding its
+ *                  annotation files, and the format (dialect) of those files. Tools are listed in a tab-separated
+ *                  configuration file (Name, Directory, Dialect), so adding an annotator or evaluating only some of
+ *                  the tools needs no code changes.
+ */
+public class ToolSource {
+    /***
+     * A Dialect is the format of a tool's annotation files.
+     */
+    public enum Dialect{
+        TSV,            //tab-separated: StartIndex, EndIndex, GO:ID, Term, reference term, ...
+        KNOWTATOR       //Knowtator XML, as used by CRAFT
+    }
+
+    private String name = "";               //tool name used in output
+    private File inputDirectory;            //directory of annotation files
+    private Dialect dialect = Dialect.TSV;  //format of the annotation files
+
+    //constructor
+    public ToolSource(String name, File inputDirectory, Dialect dialect){
+        this.name = name;
+        this.inputDirectory = inputDirectory;
+        this.dialect = dialect;
+    }
+
+    //getters
+    public String getName(){ return name; }
+    public File getInputDirectory(){ return inputDirectory; }
+    public Dialect getDialect(){ return dialect; }
+    public String getOutputName(){ return name.toLowerCase(); }
+
+    /***
+     * load reads the tools from a configuration file. Blank lines and lines starting with # are skipped.
+     * @param config - tab-separated file with a name, input directory, and dialect per line
+     * @return tools in the order they are listed, or the default tools if the file cannot be found
+     */
+    public static List<ToolSource> load(File config){
+        List<ToolSource> tools = new ArrayList<>();
+        String line;
+        String[] values;
+        try(Scanner scan = new Scanner(config)){
+            while(scan.hasNextLine()){
+                line = scan.nextLine().trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                values = line.split("\t");
+                if(values.length < 2){
+                    System.out.println("Error: Invalid tool " + line + " in " + config);
+                    continue;
+                }
+                try{
+                    tools.add(new ToolSource(values[0].trim(), new File(values[1].trim()),
+                            values.length > 2 ? Dialect.valueOf(values[2].trim().toUpperCase()) : Dialect.TSV));
+                }catch(IllegalArgumentException ex){
+                    System.out.println("Error: Unknown dialect " + values[2] + " for tool " + values[0]);
+                }
+            }
+        }catch(FileNotFoundException ex){
+            System.out.println("Error: File not found. File: " + config + ". Using the default tools.");
+            return defaults();
+        }
+        return tools;
+    }
+
+    /***
+     * defaults gets the tools with bundled annotations.
+     * @return NCBO, Textpresso, MetaMap, and Scigraph
+     */
+    public static List<ToolSource> defaults(){
+        return Arrays.asList(new ToolSource("NCBO", new File("input/ncboAnnotations"), Dialect.TSV),
+                new ToolSource("Textpresso", new File("input/textpressoAnnotations"), Dialect.TSV),
+                new ToolSource("MetaMap", new File("input/metamapAnnotations"), Dialect.TSV),
+                new ToolSource("Scigraph", new File("input/scigraphAnnotations"), Dialect.TSV));
+    }
+
+    /***
+     * select keeps only the named tools.
+     * @param tools - all configured tools
+     * @param names - comma-separated tool names (case-insensitive); null or empty selects every tool
+     * @return selected tools, in configuration order
+     */
+    public static List<ToolSource> select(List<ToolSource> tools, String names){
+        List<ToolSource> selected = new ArrayList<>();
+        Set<String> wanted = new HashSet<>();
+        if(names == null || names.trim().isEmpty()){
+            return tools;
+        }
+        for(String name: names.split(",")){
+            wanted.add(name.trim().toLowerCase());
+        }
+        for(ToolSource tool: tools){
+            if(wanted.remove(tool.getName().toLowerCase())){
+                selected.add(tool);
+            }
+        }
+        for(String name: wanted){
+            System.out.println("Error: Tool " + name + " is not configured.");
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,223 @@
+//Java imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Purpose:         Reads tab-separated tool annotation files (StartIndex, EndIndex, GO:ID, Term, reference term, ...)
+ *                  through an NIO channel. Indices are parsed straight from the bytes, and the string columns are
+ *                  interned through a byte-keyed table so repeated GO:IDs and terms share a single String. A reader
+ *                  keeps its table across files, and is not thread-safe.
+ */
+public class TsvReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];      //bytes read from the current file
+    private int[] fields = new int[10];                 //start and end of each column in the current line
+    private String[] strings = new String[1024];        //interned strings
+    private byte[][] keys = new byte[1024][];           //bytes of each interned string
+    private int[] hashes = new int[1024];               //hash of each interned string
+    private int interned = 0;                           //number of interned strings
+
+    /***
+     * A RowHandler receives each annotation line of a file.
+     */
+    public interface RowHandler{
+        void row(int start, int end, String id, String term, String ref);
+    }
+
+    /***
+     * read reads each annotation line of a file (skipping the header) and passes its values to the handler. Blank or
+     * missing indices are passed as -1, and a blank or missing GO:ID or reference term (Textpresso leaves some blank)
+     * as "N/A".
+     * @param file - tab-separated annotation file
+     * @param handler - receives the values of each line
+     * @return number of annotation lines read
+     * @throws IOException if the file cannot be read
+     */
+    public int read(File file, RowHandler handler) throws IOException{
+        int count = 0, length = 0, position = 0, newline, read;
+        boolean header = true;
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            while(true){
+                //grow the buffer if a single line does not fit
+                if(length == buffer.length){
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+                if(read == -1){
+                    break;
+                }
+                length += read;
+
+                //handle each complete line in the buffer
+                while((newline = indexOf(buffer, (byte) '\n', position, length)) >= 0){
+                    if(header){
+                        header = false;
+                    }
+                    else if(parseLine(position, newline, handler)){
+                        count++;
+                    }
+                    position = newline + 1;
+                }
+                //move the incomplete line to the front of the buffer
+                System.arraycopy(buffer, position, buffer, 0, length - position);
+                length -= position;
+                position = 0;
+            }
+            //last line without a newline
+            if(length > 0 && !header && parseLine(0, length, handler)){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /***
+     * parseLine splits a line into columns and passes its values to the handler.
+     * @param from - index of the first byte of the line
+     * @param to - index after the last byte of the line
+     * @param handler - receives the values of the line
+     * @return true if the line held an annotation
+     */
+    private boolean parseLine(int from, int to, RowHandler handler){
+        int columns = 0, start = from;
+        //strip Windows line endings
+        if(to > from && buffer[to - 1] == '\r'){
+            to--;
+        }
+        if(to == from){
+            return false;
+        }
+        //record the first five columns; anything after the reference term is not used
+        for(int i = from; i <= to && columns < 5; i++){
+            if(i == to || buffer[i] == '\t'){
+                fields[columns * 2] = start;
+                fields[columns * 2 + 1] = i;
+                columns++;
+                start = i + 1;
+            }
+        }
+        handler.row(parseIndex(columns, 0), parseIndex(columns, 1), column(columns, 2, "N/A"), column(columns, 3, ""),
+                column(columns, 4, "N/A"));
+        return true;
+    }
+
+    /***
+     * parseIndex parses an integer column in place.
+     * @param columns - number of columns in the line
+     * @param column - column to parse
+     * @return value of the column, or -1 if it is blank or missing
+     */
+    private int parseIndex(int columns, int column){
+        int i, end, value = 0;
+        boolean negative = false;
+        if(column >= columns || fields[column * 2] == fields[column * 2 + 1]){
+            return -1;
+        }
+        i = fields[column * 2];
+        end = fields[column * 2 + 1];
+        if(buffer[i] == '-'){
+            negative = true;
+            i++;
+        }
+        for(; i < end; i++){
+            if(buffer[i] < '0' || buffer[i] > '9'){
+                throw new NumberFormatException("Invalid index: "
+                        + new String(buffer, fields[column * 2], end - fields[column * 2], StandardCharsets.UTF_8));
+            }
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /***
+     * column gets the interned string value of a column.
+     * @param columns - number of columns in the line
+     * @param column - column to get
+     * @param blank - value used if the column is blank or missing
+     * @return value of the column
+     */
+    private String column(int columns, int column, String blank){
+        if(column >= columns || fields[column * 2] == fields[column * 2 + 1]){
+            return blank;
+        }
+        return intern(fields[column * 2], fields[column * 2 + 1] - fields[column * 2]);
+    }
+
+    /***
+     * intern returns the String for a range of bytes, creating it only the first time those bytes are seen.
+     * @param offset - index of the first byte
+     * @param length - number of bytes
+     * @return interned String
+     */
+    private String intern(int offset, int length){
+        int hash = 1, slot, mask = strings.length - 1;
+        for(int i = offset; i < offset + length; i++){
+            hash = 31 * hash + buffer[i];
+        }
+        slot = (hash ^ (hash >>> 16)) & mask;
+        while(strings[slot] != null){
+            if(hashes[slot] == hash && equalBytes(keys[slot], offset, length)){
+                return strings[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = Arrays.copyOfRange(buffer, offset, offset + length);
+        strings[slot] = new String(keys[slot], StandardCharsets.UTF_8);
+        hashes[slot] = hash;
+        String value = strings[slot];
+        //keep the table at most half full
+        if(++interned * 2 > strings.length){
+            rehash();
+        }
+        return value;
+    }
+
+    private boolean equalBytes(byte[] key, int offset, int length){
+        if(key.length != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(key[i] != buffer[offset + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(){
+        String[] oldStrings = strings;
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int slot, mask = oldStrings.length * 2 - 1;
+        strings = new String[oldStrings.length * 2];
+        keys = new byte[oldStrings.length * 2][];
+        hashes = new int[oldStrings.length * 2];
+        for(int i = 0; i < oldStrings.length; i++){
+            if(oldStrings[i] != null){
+                slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while(strings[slot] != null){
+                    slot = (slot + 1) & mask;
+                }
+                strings[slot] = oldStrings[i];
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to){
+        for(int i = from; i < to; i++){
+            if(bytes[i] == value){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,11 +1,28 @@
 //Java imports
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 //ELK imports
-import com.google.common.collect.Sets;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.semanticweb.elk.owlapi.ElkReasonerFactory;
@@ -13,7 +30,10 @@ import org.semanticweb.elk.owlapi.ElkReasonerFactory;
 //OWL API
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
 import org.semanticweb.owlapi.reasoner.*;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import uk.ac.manchester.cs.owlapi.modularity.SyntacticLocalityModuleExtractor;
 
 /**
  * Created by:      Lucas Beasley
@@ -24,36 +44,29 @@ import org.semanticweb.owlapi.reasoner.*;
  *                  the number of unique Gene Ontology annotations for the CRAFT and all tools.
  */
 public class averageJaccard {
+    private static final int STREAM_WINDOW = 64;           //papers held in memory at once when streaming
+    private static final int LEVEL_CHUNK = 1024;            //GO:ID ordinals counted per task in level distributions
     private OWLOntology go_ontology;
     private OWLDataFactory factory;
     private OWLReasoner reasoner;
     private String go_prefix;
-
-    /***
-     * An Annotation contains each individual annotation in a paper for a tool.
-     */
-    public class Annotation{
-        private String term = "";           //term in paper
-        private String id = "";             //GO:ID for ontology term
-        private String ref = "";            //ontology term
-        private int startIndex = -1;        //term's starting index in paper
-        private int endIndex = -1;          //term's ending index in paper
-        private int level = 0;              //ID's level in ontology
-
-        //getters/setters
-        public String getTerm(){ return this.term; }
-        public String getID(){ return this.id; }
-        private String getRef(){ return this.ref; }
-        private int getStartIndex(){ return this.startIndex; }
-        private int getEndIndex(){ return this.endIndex; }
-        private int getLevel(){ return this.level; }
-        public void setTerm(String term){ this.term = term; }
-        public void setID(String id){ this.id = id; }
-        private void setRef(String ref){ this.ref = ref; }
-        private void setStartIndex(int start){ this.startIndex = start; }
-        private void setEndIndex(int end){ this.endIndex = end; }
-        private void setLevel(int level){ this.level = level; }
-    }
+    private OntologyIndex go_index;
+    private String go_version;              //checksum of the ontology file the index was built from
+    private GoLookup go_lookup;             //levels and Jaccard values resolved before scoring; null when streaming
+    private boolean ontology_module;        //classify only the module of the GO:IDs the annotations refer to
+    private Overlap overlap;                //lenient matching scored next to exact matching; null for exact only
+    private double overlap_ratio = 0.5;     //minimum overlap for Overlap.RATIO
+    private File cache_directory;           //result and annotation caches; null when caching is off
+    private RunMetrics metrics = new RunMetrics();      //stage timings, counters, and latencies of the run
+    private LongAdder jaccard_queries = new LongAdder();        //Jaccard values calculated from the ontology
+    private LongAdder depth_queries = new LongAdder();          //levels looked up in the ontology
+    private TsvReader tsv_reader = new TsvReader();     //reads tool annotation files; shares interned strings
+    private StringDictionary strings = new StringDictionary();     //codes of annotation terms; shared by all stores
+    private GoDictionary go_ids = new GoDictionary();               //ordinals of GO:IDs; shared by all stores
+    private ExecutorService pool;           //evaluates papers concurrently; null when running sequentially
+    private ThreadLocal<TsvReader> paper_readers = ThreadLocal.withInitial(TsvReader::new);  //streaming: per thread
+    //StAX factories for Knowtator files, created once per thread instead of once per paper
+    private ThreadLocal<XMLInputFactory> xml_factories = ThreadLocal.withInitial(XMLInputFactory::newInstance);
 
 //    /***
 //     * Annotation class for MetaMap annotations
@@ -123,19 +136,328 @@ public class averageJaccard {
         private void setFalseNegatives(int falseNegatives){ this.falsenegatives = falseNegatives; }
     }
 
+    /***
+     * A Branch is one of the three top-level branches of the Gene Ontology.
+     */
+    private enum Branch{ BP, CC, MF }
+
+    /***
+     * An Overlap is how a tool span must overlap a CRAFT span to count as a match in lenient (overlap) matching.
+     */
+    private enum Overlap{
+        ANY,                //the spans share at least one character
+        CONTAINMENT,        //one span lies within the other
+        RATIO               //shared characters are at least overlap_ratio of the characters of both spans
+    }
+
+    /***
+     * A SpanIndex holds the rows of a paper's annotation store sorted by (endIndex, startIndex), with their indices in
+     * primitive arrays. Annotations sorted by endIndex, as CRAFT's are, are matched against it with a two-pointer merge
+     * instead of a lookup per annotation. Rows with the same span keep their file order, so a duplicated span is
+     * matched once per occurrence.
+     */
+    private class SpanIndex{
+        private int[] starts;                   //startIndex of each row, in span order
+        private int[] ends;                     //endIndex of each row, in span order
+        private int[] rows;                     //rows of the store, in span order
+
+        //constructor
+        private SpanIndex(AnnotationStore annotations){
+            this.rows = annotations.spanOrder();
+            this.starts = new int[this.rows.length];
+            this.ends = new int[this.rows.length];
+            for(int i = 0; i < this.rows.length; i++){
+                this.starts[i] = annotations.getStart(this.rows[i]);
+                this.ends[i] = annotations.getEnd(this.rows[i]);
+            }
+        }
+
+        /***
+         * join finds the indexed annotations with the same span as each of the given spans. The spans are merged in
+         * one pass while their ends do not decrease; a span that ends before the previous one is found by binary
+         * search, so unsorted spans are still matched correctly.
+         * @param qstarts - startIndex of each span
+         * @param qends - endIndex of each span
+         * @param count - number of spans
+         * @return for span i, positions [2i] (inclusive) to [2i+1] (exclusive) of the annotations with that span
+         */
+        private int[] join(int[] qstarts, int[] qends, int count){
+            int[] ranges = new int[count * 2];
+            int p = 0, lo, hi, n = ends.length;
+            for(int i = 0; i < count; i++){
+                if(i > 0 && qends[i] < qends[i - 1]){
+                    p = lowerBound(qends[i]);
+                }
+                //first annotation ending at the span's end
+                while(p < n && ends[p] < qends[i]){
+                    p++;
+                }
+                //annotations with the same end are sorted by start
+                lo = p;
+                while(lo < n && ends[lo] == qends[i] && starts[lo] < qstarts[i]){
+                    lo++;
+                }
+                hi = lo;
+                while(hi < n && ends[hi] == qends[i] && starts[hi] == qstarts[i]){
+                    hi++;
+                }
+                ranges[i * 2] = lo;
+                ranges[i * 2 + 1] = hi;
+            }
+            return ranges;
+        }
+
+        private int lowerBound(int end){
+            int lo = 0, hi = ends.length, mid;
+            while(lo < hi){
+                mid = (lo + hi) >>> 1;
+                if(ends[mid] < end){
+                    lo = mid + 1;
+                }
+                else{
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        //getters
+        private int getRow(int i){ return rows[i]; }
+        private int size(){ return rows.length; }
+    }
+
+    /***
+     * An OverlapSweep walks a paper's tool annotations in start order alongside CRAFT annotations visited in start
+     * order, keeping the tool annotations whose outer bounds may overlap the current CRAFT annotation: they become
+     * active once they start before the CRAFT annotation ends and are dropped for good once they end before a CRAFT
+     * annotation starts, so each CRAFT annotation is only compared with the annotations around it.
+     */
+    private class OverlapSweep{
+        private AnnotationStore toolannos;      //tool annotations for the paper
+        private int[] toolorder;                //tool rows in start order
+        private int[] active = new int[16];     //tool rows that may overlap the current CRAFT annotation
+        private int activesize = 0;             //number of active tool rows
+        private int next = 0;                   //next tool row to activate, in start order
+
+        //constructor
+        private OverlapSweep(AnnotationStore toolannos){
+            this.toolannos = toolannos;
+            this.toolorder = toolannos.startOrder();
+        }
+
+        /***
+         * advance moves the sweep to the next CRAFT annotation; CRAFT annotations must be visited in start order.
+         * @param start - CRAFT annotation's starting index
+         * @param end - CRAFT annotation's ending index
+         * @return number of active tool rows, held in active[0] to active[count - 1]
+         */
+        private int advance(int start, int end){
+            int kept = 0;
+            //activate the tool annotations starting before the CRAFT annotation ends
+            while(next < toolorder.length && toolannos.getStart(toolorder[next]) <= end){
+                if(activesize == active.length){
+                    active = Arrays.copyOf(active, activesize * 2);
+                }
+                active[activesize++] = toolorder[next++];
+            }
+            //drop the tool annotations ending before the CRAFT annotation starts; later ones start no earlier
+            for(int j = 0; j < activesize; j++){
+                if(toolannos.getEnd(active[j]) >= start){
+                    active[kept++] = active[j];
+                }
+            }
+            activesize = kept;
+            return activesize;
+        }
+    }
+
+    /***
+     * A PaperScorer collects the matches of a tool's annotations against CRAFT's for a single paper: the exact and
+     * partial matches, the Jaccard value of each match, and the Jaccard values bucketed by the word count of the CRAFT
+     * reference term.
+     */
+    private class PaperScorer{
+        private AnnotationStore craftannos;                             //CRAFT annotations for the paper
+        private AnnotationStore toolannos;                              //tool annotations for the paper
+        private List<PartialMatch> partialMatchList = new ArrayList<>();
+        private double[] partialjaccards = new double[16];              //Jaccard value of each partial match
+        private Map<Integer, double[]> buckets = new HashMap<>();       //word count -> Jaccard values
+        private Map<Integer, Integer> bucketsizes = new HashMap<>();    //word count -> number of Jaccard values
+        private int exacts = 0;
+        private int falsenegatives = 0;
+
+        //constructor
+        private PaperScorer(AnnotationStore craftannos, AnnotationStore toolannos){
+            this.craftannos = craftannos;
+            this.toolannos = toolannos;
+        }
+
+        /***
+         * match records a tool annotation matching a CRAFT annotation.
+         * @param a - row of the CRAFT annotation
+         * @param b - row of the tool annotation
+         * @param craftreflength - word count of the CRAFT reference term
+         */
+        private void match(int a, int b, int craftreflength){
+            double jaccard;
+            double[] bucket;
+            int size;
+            //same GO:ID?
+            if(craftannos.getIDOrdinal(a) == toolannos.getIDOrdinal(b)){
+                exacts++; //both same, add to total match count
+                jaccard = 1.0;
+            }
+            else{
+                //tagged term at indices, but incorrect GO:ID
+                jaccard = calculateJaccard(craftannos.getIDOrdinal(a), toolannos.getIDOrdinal(b));
+                if(partialMatchList.size() == partialjaccards.length){
+                    partialjaccards = Arrays.copyOf(partialjaccards, partialjaccards.length * 2);
+                }
+                partialjaccards[partialMatchList.size()] = jaccard;
+                //add new partial match
+                partialMatchList.add(new PartialMatch(craftannos.getID(a), toolannos.getID(b)));
+            }
+            //add jaccard to bucket
+            size = bucketsizes.getOrDefault(craftreflength, 0);
+            bucket = buckets.get(craftreflength);
+            if(bucket == null || bucket.length == size){
+                bucket = bucket == null ? new double[4] : Arrays.copyOf(bucket, size * 2);
+                buckets.put(craftreflength, bucket);
+            }
+            bucket[size] = jaccard;
+            bucketsizes.put(craftreflength, size + 1);
+        }
+
+        /***
+         * miss records a CRAFT annotation the tool did not match (a false negative).
+         */
+        private void miss(){
+            falsenegatives++;
+        }
+
+        /***
+         * result gets the scores of the paper.
+         * @param newannotations - number of tool annotations that are new (not in CRAFT)
+         * @return counts, partial matches, Jaccard values, and Jaccard values bucketed by ref word count
+         */
+        private ResultCache.PaperResult result(int newannotations){
+            String[] craftIDs, toolIDs;
+            double[] jaccards = null;
+            //trim the buckets to their number of values
+            for(Map.Entry<Integer, double[]> e: buckets.entrySet()){
+                e.setValue(Arrays.copyOf(e.getValue(), bucketsizes.get(e.getKey())));
+            }
+
+            //partial match GO:IDs
+            craftIDs = new String[partialMatchList.size()];
+            toolIDs = new String[partialMatchList.size()];
+            for(int i = 0; i < partialMatchList.size(); i++){
+                craftIDs[i] = partialMatchList.get(i).getCraftID();
+                toolIDs[i] = partialMatchList.get(i).getToolID();
+            }
+            //Jaccard values of the partial matches, then 1.0 for each exact match
+            if(partialMatchList.size() > 0 || exacts > 0){
+                jaccards = Arrays.copyOf(partialjaccards, partialMatchList.size() + exacts);
+                Arrays.fill(jaccards, partialMatchList.size(), jaccards.length, 1.0);
+            }
+            return new ResultCache.PaperResult(new int[]{exacts, partialMatchList.size(), newannotations,
+                    falsenegatives}, craftIDs, toolIDs, jaccards, buckets);
+        }
+    }
+
+    /***
+     * An Evaluation holds the results of a run for CRAFT and each tool, ready to be written out. Tool results are kept
+     * in tool order.
+     */
+    private class Evaluation{
+        private Map<Integer, double[]> craft_bucketed;              //CRAFT word count distribution
+        //level distributions: [0] all GO:IDs, then one per branch in Branch order
+        private LevelHistogram[] craft_level_dist;                  //CRAFT level distribution
+        private int[] craft_total;                                  //CRAFT total counts
+        //count, mean, and 2nd standard error per word count bucket
+        private Map<String, Map<Integer, double[]>> tool_bucketed = new LinkedHashMap<>();
+        private Map<String, LevelHistogram[]> tool_level_dist = new LinkedHashMap<>();
+        private Map<String, CountsAndPartials> tool_totals = new LinkedHashMap<>();
+        //average Jaccard value of each paper
+        private Map<String, Map<String, Double>> tool_avg_jaccard = new LinkedHashMap<>();
+        //average mean Jaccard value and 2nd standard error of the mean
+        private Map<String, double[]> tool_avg_mean_and_dev = new LinkedHashMap<>();
+        //total counts, and average mean Jaccard value and 2nd standard error, of lenient (overlap) matching; empty
+        //when only exact matches are scored
+        private Map<String, CountsAndPartials> tool_lenient_totals = new LinkedHashMap<>();
+        private Map<String, double[]> tool_lenient_avg_mean_and_dev = new LinkedHashMap<>();
+    }
+
+    /***
+     * A StreamedPaper holds the annotations of one paper for CRAFT and each tool, and each tool's scores for it, until
+     * they are folded into the running results of a streaming run.
+     */
+    private class StreamedPaper{
+        private AnnotationStore craft;                      //CRAFT annotations; null if CRAFT has none
+        private AnnotationStore[] tools;                    //annotations of each tool; null if the tool has none
+        private ResultCache.PaperResult[] results;          //scores of each tool; null if the paper was not scored
+        private ResultCache.PaperResult[] lenient;          //lenient (overlap) scores of each tool
+
+        //constructor
+        private StreamedPaper(int tools){
+            this.tools = new AnnotationStore[tools];
+            this.results = new ResultCache.PaperResult[tools];
+            this.lenient = new ResultCache.PaperResult[tools];
+        }
+    }
+
+    /***
+     * A ToolAggregate keeps the results of one tool while papers are added one at a time: total counts, unique GO:IDs
+     * (for the level distribution as well), running statistics per word count bucket, and the average Jaccard value of
+     * each paper.
+     */
+    private class ToolAggregate{
+        private CountsAndPartials total = new CountsAndPartials();
+        private BitSet goids = new BitSet();                                //ordinals of the GO:IDs seen
+        private Map<Integer, RunningStats> buckets = new HashMap<>();       //word count -> Jaccard statistics
+        private Map<String, Double> means = new HashMap<>();                //average Jaccard value of each paper
+
+        /***
+         * add adds a paper the tool annotated.
+         * @param key - paper ID (filename)
+         * @param annos - tool annotations for the paper
+         * @param result - scores of the tool for the paper, or null if CRAFT has no annotations for it
+         */
+        private void add(String key, AnnotationStore annos, ResultCache.PaperResult result){
+            addGOs(goids, annos);
+            if(result != null){
+                addResult(key, result);
+            }
+        }
+
+        /***
+         * addResult adds the scores of a paper the tool annotated.
+         * @param key - paper ID (filename)
+         * @param result - scores of the tool for the paper
+         */
+        private void addResult(String key, ResultCache.PaperResult result){
+            addCounts(total, result);
+            mergeBuckets(buckets, bucketStatistics(result));
+            if(result.getJaccards() != null){
+                means.put(key, calculateMean(result.getJaccards()));
+            }
+        }
+    }
+
     public static void main(String[] args) {
         averageJaccard avgj = new averageJaccard();
+        //Number of papers evaluated at once (-Dthreads=N); 1 runs sequentially
+        avgj.setParallelism(Integer.getInteger("threads", Runtime.getRuntime().availableProcessors()));
         //Directories for CRAFT annotations
         File craft_cc = new File("input/craftAnnotations/go_cc");
         File craft_bpmf = new File("input/craftAnnotations/go_bpmf");
-        //Directory for NCBO Annotations
-        File ncbo = new File("input/ncboAnnotations");
-        //Directory for Textpresso Annotations
-        File textpresso = new File("input/textpressoAnnotations");
-        //Directory for MetaMap Annotations
-        File metamap = new File("input/metamapAnnotations");
-        //Directory for Scigraph Annotations
-        File scigraph = new File("input/scigraphAnnotations");
+        //Per-paper results and parsed annotations are cached here between runs (-Dresults.cache=dir; empty turns
+        //caching off)
+        String cache_path = System.getProperty("results.cache", "cache");
+        avgj.cache_directory = cache_path.isEmpty() ? null : new File(cache_path);
+        //Tools to evaluate, listed in the tool file; -Dtools=NCBO,MetaMap evaluates only those tools
+        File tool_file = new File(System.getProperty("tools.config", "tools.tsv"));
+        List<ToolSource> tools = ToolSource.select(ToolSource.load(tool_file), System.getProperty("tools"));
         //GO Ontology file
         File ontology = new File("go-plus.owl");
         //GO BP ID file
@@ -144,218 +466,593 @@ public class averageJaccard {
         File cc_file = new File("input/idFiles/cc_classes.tsv");
         //GO MF ID file
         File mf_file = new File("input/idFiles/mf_classes.tsv");
+        //Classify only the part of the ontology the annotations refer to (-Dontology.module=true)
+        avgj.ontology_module = Boolean.getBoolean("ontology.module");
+        //Also score tool spans that overlap CRAFT spans as matches (-Doverlap=any|containment|ratio, with
+        //-Doverlap.ratio=0.5 for ratio); lenient scores are written next to the exact ones
+        String overlap = System.getProperty("overlap", "");
+        if(!overlap.isEmpty()){
+            try{
+                avgj.overlap = Overlap.valueOf(overlap.trim().toUpperCase());
+            }catch(IllegalArgumentException ex){
+                System.out.println("Error: Unknown overlap mode " + overlap);
+            }
+            avgj.overlap_ratio = Double.parseDouble(System.getProperty("overlap.ratio", "0.5"));
+        }
+        //Metrics of the run (-Dmetrics=file)
+        File metrics_output = new File(System.getProperty("metrics", "output/metrics.prom"));
+        RunMetrics.Stage stage;
+
+        //Map all of the GO:IDs to their branch
+        stage = avgj.metrics.stage("read_ids", null);
+        Map<String, Branch> branches = new HashMap<>();
+        avgj.pullIDs(bp_file, Branch.BP, branches);
+        avgj.pullIDs(cc_file, Branch.CC, branches);
+        avgj.pullIDs(mf_file, Branch.MF, branches);
+        stage.end();
+
+        //Evaluate every tool against CRAFT; -Dstreaming=true reads, scores, and releases one paper at a time
+        Evaluation results;
+        if(Boolean.getBoolean("streaming")){
+            results = avgj.evaluateStreaming(craft_cc, craft_bpmf, tools, branches, ontology);
+        }
+        else{
+            results = avgj.evaluate(craft_cc, craft_bpmf, tools, branches, ontology);
+        }
 
-        //Pull all of the GO:IDs into their separate branched lists
-        List<String> bp_ids = avgj.pullIDs(bp_file);
-        List<String> cc_ids = avgj.pullIDs(cc_file);
-        List<String> mf_ids = avgj.pullIDs(mf_file);
-
-        //Pull all annotations into maps
-        Map<String, List<Annotation>> craft_annos = avgj.mergeMaps(avgj.pullCRAFTAnnos(craft_cc),
-                                                    avgj.pullCRAFTAnnos(craft_bpmf));
-        Map<String, List<Annotation>> ncbo_annos = avgj.pullAnnos(ncbo);
-        Map<String, List<Annotation>> textpresso_annos = avgj.pullAnnos(textpresso);
-        Map<String, List<Annotation>> metamap_annos = avgj.pullAnnos(metamap);
-        Map<String, List<Annotation>> scigraph_annos = avgj.pullAnnos(scigraph);
+        stage = avgj.metrics.stage("write_output", null);
+        //Write average Jaccards of each paper to a file per tool
+        for(ToolSource tool: tools){
+            avgj.writeOut(results.tool_avg_jaccard.get(tool.getName()),
+                    new File("output/" + tool.getOutputName() + "_avg"));
+        }
 
-        //Setup the ontology
-        avgj.setupOntology(ontology);
-
-        //Bucket annotations based upon ref word count
-        Map<Integer, double[]> ncbo_bucketed = avgj.bucketsAndJaccards(ncbo_annos, craft_annos);
-        Map<Integer, double[]> textpresso_bucketed = avgj.bucketsAndJaccards(textpresso_annos, craft_annos);
-        Map<Integer, double[]> metamap_bucketed = avgj.bucketsAndJaccards(metamap_annos, craft_annos);
-        Map<Integer, double[]> scigraph_bucketed = avgj.bucketsAndJaccards(scigraph_annos, craft_annos);
-        Map<Integer, double[]> craft_bucketed = avgj.buckets(craft_annos);
         //Write out Word count distribution, mean, and 2 standard error
         File bucket_file = new File("output/bucket");
-        avgj.writeOutBuckets(craft_bucketed, ncbo_bucketed, textpresso_bucketed, metamap_bucketed, scigraph_bucketed, bucket_file);
-
-        //Get the ontology level for all annotations
-        craft_annos = avgj.calculateLongestPaths(craft_annos);
-        ncbo_annos = avgj.calculateLongestPaths(ncbo_annos);
-        textpresso_annos = avgj.calculateLongestPaths(textpresso_annos);
-        metamap_annos = avgj.calculateLongestPaths(metamap_annos);
-        scigraph_annos = avgj.calculateLongestPaths(scigraph_annos);
-
-        //Get the level distribution for CRAFT/each tool.
-        Map<Integer, Integer> craft_level_dist = avgj.calculateLevelDistribution(craft_annos);
-        Map<Integer, Integer> ncbo_level_dist = avgj.calculateLevelDistribution(ncbo_annos);
-        Map<Integer, Integer> textpresso_level_dist = avgj.calculateLevelDistribution(textpresso_annos);
-        Map<Integer, Integer> metamap_level_dist = avgj.calculateLevelDistribution(metamap_annos);
-        Map<Integer, Integer> scigraph_level_dist = avgj.calculateLevelDistribution(scigraph_annos);
+        avgj.writeOutBuckets(results.craft_bucketed, results.tool_bucketed, bucket_file);
 
         //Write level distributions to file
         File level_output = new File("output/level_distribution");
-        avgj.writeOut(craft_level_dist, ncbo_level_dist, textpresso_level_dist, metamap_level_dist, scigraph_level_dist,
-                level_output);
-
-        //Compare CRAFT annotations to tools, get the match counts (total, partial, new), and list of partial matches
-        Map<String, CountsAndPartials> ncbo_counts = avgj.compareAnnotations(craft_annos, ncbo_annos);
-        Map<String, CountsAndPartials> textpresso_counts = avgj.compareAnnotations(craft_annos, textpresso_annos);
-        Map<String, CountsAndPartials> metamap_counts = avgj.compareAnnotations(craft_annos, metamap_annos);
-        Map<String, CountsAndPartials> scigraph_counts = avgj.compareAnnotations(craft_annos, scigraph_annos);
-
-        //Retrieve the total counts (exact, partial, new annotations, unique GO:IDs) for each tool and CRAFT
-        int[] craft_total = avgj.getCRAFTTotalCounts(craft_annos, bp_ids, cc_ids, mf_ids);
-        CountsAndPartials ncbo_total = avgj.totalCounts(ncbo_counts);
-        CountsAndPartials textpresso_total = avgj.totalCounts(textpresso_counts);
-        CountsAndPartials metamap_total = avgj.totalCounts(metamap_counts);
-        CountsAndPartials scigraph_total = avgj.totalCounts(scigraph_counts);
-        avgj.countUniqueGOs(ncbo_total, ncbo_annos);
-        avgj.countUniqueGOs(textpresso_total, textpresso_annos);
-        avgj.countUniqueGOs(metamap_total, metamap_annos);
-        avgj.countUniqueGOs(scigraph_total, scigraph_annos);
+        avgj.writeOut(results.craft_level_dist, results.tool_level_dist, level_output);
+        File branch_level_output = new File("output/level_distribution_branches");
+        avgj.writeOutBranchLevels(results.craft_level_dist, results.tool_level_dist, branch_level_output);
 
         //Write total counts to files
         File totals_output = new File("output/totals");
-        avgj.writeOut(craft_total, ncbo_total, textpresso_total, metamap_total, scigraph_total, totals_output);
-
-        //Calculate Jaccard values for each paper
-        Map<String, double[]> ncbo_jaccards = avgj.calculateJaccards(ncbo_counts);
-        Map<String, double[]> textpresso_jaccards = avgj.calculateJaccards(textpresso_counts);
-        Map<String, double[]> metamap_jaccards = avgj.calculateJaccards(metamap_counts);
-        Map<String, double[]> scigraph_jaccards = avgj.calculateJaccards(scigraph_counts);
-
-        //Calculate mean of Jaccard values and their standard deviation for each paper
-        Map<String, Double> ncbo_avg_jaccard = avgj.calculateMean(ncbo_jaccards);
-        Map<String, Double> textpresso_avg_jaccard = avgj.calculateMean(textpresso_jaccards);
-        Map<String, Double> metamap_avg_jaccard = avgj.calculateMean(metamap_jaccards);
-        Map<String, Double> scigraph_avg_jaccard = avgj.calculateMean(scigraph_jaccards);
-
-        //Write average Jaccards to files
-        File ncbo_output = new File("output/ncbo_avg");
-        File textpresso_output = new File("output/textpresso_avg");
-        File metamap_output = new File("output/metamap_avg");
-        File scigraph_output = new File("output/scigraph_avg");
-        avgj.writeOut(ncbo_avg_jaccard, ncbo_output);
-        avgj.writeOut(textpresso_avg_jaccard,textpresso_output);
-        avgj.writeOut(metamap_avg_jaccard, metamap_output);
-        avgj.writeOut(scigraph_avg_jaccard, scigraph_output);
-
-        //Calculate average mean Jaccard value and average 2nd standard error of the mean for each tool
-        double[] ncbo_avg_mean_and_dev = avgj.calculateAvgAndDevForTool(ncbo_avg_jaccard);
-        double[] textpresso_avg_mean_and_dev = avgj.calculateAvgAndDevForTool(textpresso_avg_jaccard);
-        double[] metamap_avg_mean_and_dev = avgj.calculateAvgAndDevForTool(metamap_avg_jaccard);
-        double[] scigraph_avg_mean_and_dev = avgj.calculateAvgAndDevForTool(scigraph_avg_jaccard);
+        avgj.writeOut(results.craft_total, results.tool_totals, results.tool_lenient_totals, totals_output);
 
         //Write overall average Jaccard and 2nd standard error of the mean for each tool to a file
         File tools_output = new File("output/tool_avgs");
-        avgj.writeOut(ncbo_avg_mean_and_dev, textpresso_avg_mean_and_dev, metamap_avg_mean_and_dev,
-                scigraph_avg_mean_and_dev, tools_output);
+        avgj.writeOutToolAverages(results.tool_avg_mean_and_dev, results.tool_lenient_avg_mean_and_dev,
+                tools_output);
+        stage.end();
+
+        //Write the metrics of the run
+        avgj.metrics.count("ontology_queries_total", "Queries answered by the ontology index",
+                RunMetrics.label("query", "jaccard"), avgj.jaccard_queries.sum());
+        avgj.metrics.count("ontology_queries_total", "Queries answered by the ontology index",
+                RunMetrics.label("query", "depth"), avgj.depth_queries.sum());
+        avgj.metrics.write(metrics_output);
+
+        //Shut down the worker threads
+        avgj.setParallelism(1);
+    }
+
+    /***
+     * evaluate evaluates each tool against CRAFT with every paper in memory: all CRAFT and tool annotations are read,
+     * the levels and Jaccard values they need are resolved from the ontology in one sweep, then each tool is scored in
+     * turn.
+     * @param craft_cc - directory of CRAFT go_cc annotations
+     * @param craft_bpmf - directory of CRAFT go_bpmf annotations
+     * @param tools - tools to evaluate
+     * @param branches - map of GO:IDs to their branch
+     * @param ontology - OWL file that contains the ontology
+     * @return results for CRAFT and each tool
+     */
+    private Evaluation evaluate(File craft_cc, File craft_bpmf, List<ToolSource> tools, Map<String, Branch> branches,
+                                File ontology){
+        Evaluation results = new Evaluation();
+        RunMetrics.Stage stage;
+        long parse_start;
+
+        //Pull all CRAFT annotations into a map
+        stage = this.metrics.stage("parse", "CRAFT");
+        parse_start = System.nanoTime();
+        Map<String, AnnotationStore> craft_annos = mergeMaps(
+                pullCached("craft_" + craft_cc.getName(), craft_cc, ToolSource.Dialect.KNOWTATOR),
+                pullCached("craft_" + craft_bpmf.getName(), craft_bpmf, ToolSource.Dialect.KNOWTATOR));
+        recordParse("CRAFT", craft_annos, System.nanoTime() - parse_start);
+        stage.end();
+
+        //Pull every tool's annotations, so the GO:IDs of all tools are known (for the ontology module as well)
+        List<Map<String, AnnotationStore>> all_tool_annos = new ArrayList<>();
+        for(ToolSource tool: tools){
+            all_tool_annos.add(pullAnnos(tool));
+        }
+
+        //Setup the ontology
+        stage = this.metrics.stage("setup_ontology", null);
+        setupOntology(ontology);
+        stage.end();
+
+        //Resolve the level of every GO:ID and the Jaccard value of every CRAFT/tool GO:ID pair before scoring
+        stage = this.metrics.stage("resolve_ids", null);
+        resolveIDs(craft_annos, all_tool_annos);
+        stage.end();
+
+        stage = this.metrics.stage("statistics", "CRAFT");
+        //Bucket CRAFT annotations based upon ref word count
+        results.craft_bucketed = buckets(craft_annos);
+        //Get the level distribution of CRAFT's GO:IDs, overall and per branch
+        results.craft_level_dist = levelDistribution(collectGOs(craft_annos), branches);
+        //Retrieve the total counts (total, unique GO:IDs, branches) for CRAFT
+        results.craft_total = getCRAFTTotalCounts(craft_annos, branches);
+        stage.end();
+
+        for(int t = 0; t < tools.size(); t++){
+            ToolSource tool = tools.get(t);
+            Map<String, AnnotationStore> tool_annos = all_tool_annos.get(t);
+
+            //Score each paper against CRAFT: match counts (exact, partial, new), partial matches, and Jaccard values;
+            //papers with unchanged annotations are taken from the result cache
+            stage = this.metrics.stage("score", tool.getName());
+            Map<String, ResultCache.PaperResult> tool_results = scorePapers(tool.getName(), craft_annos, tool_annos);
+            stage.end();
+
+            //Score each paper again with overlapping spans counted as matches
+            if(this.overlap != null){
+                stage = this.metrics.stage("score_overlap", tool.getName());
+                Map<String, ResultCache.PaperResult> lenient_results = scorePapers(tool.getName(), craft_annos,
+                        tool_annos, true);
+                results.tool_lenient_totals.put(tool.getName(), totalCounts(lenient_results));
+                results.tool_lenient_avg_mean_and_dev.put(tool.getName(),
+                        calculateAvgAndDevForTool(calculateMean(getJaccards(lenient_results))));
+                stage.end();
+            }
 
-        boolean bool = true;
+            stage = this.metrics.stage("statistics", tool.getName());
+            //Bucket annotations based upon ref word count
+            results.tool_bucketed.put(tool.getName(), bucketsAndJaccards(tool_results, craft_annos));
+
+            //Get the level distribution of the tool's unique GO:IDs, overall and per branch
+            BitSet tool_goids = collectGOs(tool_annos);
+            results.tool_level_dist.put(tool.getName(), levelDistribution(tool_goids, branches));
+
+            //Retrieve the total counts (exact, partial, new annotations, unique GO:IDs) for the tool
+            CountsAndPartials tool_total = totalCounts(tool_results);
+            tool_total.setUnique(tool_goids.cardinality());
+            results.tool_totals.put(tool.getName(), tool_total);
+
+            //Calculate the mean of the Jaccard values for each paper
+            Map<String, Double> tool_avg_jaccard = calculateMean(getJaccards(tool_results));
+            results.tool_avg_jaccard.put(tool.getName(), tool_avg_jaccard);
+
+            //Calculate average mean Jaccard value and average 2nd standard error of the mean for the tool
+            results.tool_avg_mean_and_dev.put(tool.getName(), calculateAvgAndDevForTool(tool_avg_jaccard));
+            stage.end();
+        }
+        return results;
     }
 
     /***
-     * pullCRAFTAnnos retrieves the annotations from the annotation files in the passed directory.
-     * @param annoDirectory - directory of CRAFT annotations
-     * @return map with the filename as a key and a list of its respective annotations as a value
+     * evaluateStreaming evaluates each tool against CRAFT one paper at a time. A paper's CRAFT and tool annotations are
+     * read, scored, and folded into running totals, level distributions, and bucket statistics, then released, so only
+     * a window of papers is in memory at once however many papers are evaluated. A paper's files are found by their
+     * filename. The result cache is not used, as it keeps every paper's result until it is saved.
+     * @param craft_cc - directory of CRAFT go_cc annotations
+     * @param craft_bpmf - directory of CRAFT go_bpmf annotations
+     * @param tools - tools to evaluate
+     * @param branches - map of GO:IDs to their branch
+     * @param ontology - OWL file that contains the ontology
+     * @return results for CRAFT and each tool
      */
-    private Map<String, List<Annotation>> pullCRAFTAnnos(File annoDirectory){
-        Map<String, List<Annotation>> craftAnnos = new HashMap<>();
-        List<Annotation> annotations;
-        Annotation tempAnno;
-        Scanner scan;
-        String line, filename, class_id, start, end, text, go_id, ref, prevline;
-        int symbolIndex, nextSymbolIndex, starter, ender, parenindex;
+    private Evaluation evaluateStreaming(File craft_cc, File craft_bpmf, List<ToolSource> tools,
+                                         Map<String, Branch> branches, File ontology){
+        Evaluation results = new Evaluation();
+        RunMetrics.Stage stage;
+        List<Map<String, File>> sources = new ArrayList<>();       //CRAFT go_cc, CRAFT go_bpmf, then each tool
+        Set<String> papers = new TreeSet<>();
+        List<String> window = new ArrayList<>(STREAM_WINDOW);
+        Map<String, StreamedPaper> loaded;
+        StreamedPaper paper;
+        long[] parsed = new long[tools.size() + 1];                 //annotations read for CRAFT, then each tool
+
+        //running results for CRAFT and each tool
+        Map<Integer, double[]> craft_bucketed = new HashMap<>();
+        BitSet craft_goids = new BitSet();
+        CraftTotals craft_total = new CraftTotals(branches);
+        List<ToolAggregate> aggregates = new ArrayList<>();
+        List<ToolAggregate> lenient_aggregates = new ArrayList<>();
+
+        //Find the files of each paper
+        sources.add(listPapers(craft_cc, ToolSource.Dialect.KNOWTATOR));
+        sources.add(listPapers(craft_bpmf, ToolSource.Dialect.KNOWTATOR));
+        for(ToolSource tool: tools){
+            sources.add(listPapers(tool.getInputDirectory(), tool.getDialect()));
+            aggregates.add(new ToolAggregate());
+            lenient_aggregates.add(new ToolAggregate());
+        }
+        for(Map<String, File> source: sources){
+            papers.addAll(source.keySet());
+        }
 
-        for (File file: annoDirectory.listFiles()){
-            try{
-                scan = new Scanner(file);
-                annotations = new ArrayList<>();
-                //retrieve file name from second line
-                scan.nextLine();
-                line = scan.nextLine();
-                filename = line.substring(line.indexOf("\"")+1, line.lastIndexOf("\""));
-                filename = filename.substring(0, filename.length()-4);
+        //Collect the GO:IDs of CRAFT and the tools, for the ontology module
+        if(this.ontology_module){
+            List<ToolSource> all = new ArrayList<>();
+            all.add(new ToolSource("CRAFT", craft_cc, ToolSource.Dialect.KNOWTATOR));
+            all.add(new ToolSource("CRAFT", craft_bpmf, ToolSource.Dialect.KNOWTATOR));
+            all.addAll(tools);
+            stage = this.metrics.stage("collect_ids", null);
+            collectIDs(all);
+            stage.end();
+        }
 
-                while(scan.hasNextLine()){
-                    line = scan.nextLine();
-
-                    //check if annotation
-                    if(line.contains("<annotation>")){
-                        tempAnno = new Annotation();
-                        //pull GO:ID
-                        line = scan.nextLine();
-                        class_id = line.substring(line.indexOf("\"")+1, line.lastIndexOf("\""));
-                        tempAnno.setID(class_id);
-                        scan.nextLine();
-
-                        //pull start and end indexes
-                        //*can have multiple start/end indexes if text spans out*
-                        line = scan.nextLine();
-
-                        symbolIndex = line.indexOf("\"");
-                        nextSymbolIndex = line.indexOf("\"", symbolIndex+1);
-                        start = line.substring(symbolIndex+1, nextSymbolIndex);
-                        starter = Integer.parseInt(start);
-                        tempAnno.setStartIndex(starter);
-
-                        prevline = line;
-                        line = scan.nextLine();
-
-                        //check if contains multiple start/end indexes
-                        while(line.contains("<span start")){
-                            prevline = line;
-                            line = scan.nextLine();
+        //Setup the ontology
+        stage = this.metrics.stage("setup_ontology", null);
+        setupOntology(ontology);
+        stage.end();
+
+        //Read and score a window of papers at once, then fold them into the running results in paper order
+        stage = this.metrics.stage("stream", null);
+        Iterator<String> keys = papers.iterator();
+        while(keys.hasNext()){
+            window.clear();
+            while(keys.hasNext() && window.size() < STREAM_WINDOW){
+                window.add(keys.next());
+            }
+            loaded = forEachPaper(window, key -> loadPaper(key, sources, tools));
+            for(String key: window){
+                paper = loaded.get(key);
+                if(paper.craft != null){
+                    addToBuckets(craft_bucketed, paper.craft);
+                    addGOs(craft_goids, paper.craft);
+                    craft_total.add(paper.craft);
+                    parsed[0] += paper.craft.size();
+                }
+                for(int t = 0; t < tools.size(); t++){
+                    if(paper.tools[t] != null){
+                        aggregates.get(t).add(key, paper.tools[t], paper.results[t]);
+                        if(paper.lenient[t] != null){
+                            lenient_aggregates.get(t).addResult(key, paper.lenient[t]);
                         }
+                        parsed[t + 1] += paper.tools[t].size();
+                    }
+                }
+            }
+        }
+        stage.end();
+
+        this.metrics.count("annotations_parsed_total", "Annotations parsed", RunMetrics.label("tool", "CRAFT"),
+                parsed[0]);
+        results.craft_bucketed = craft_bucketed;
+        results.craft_level_dist = levelDistribution(craft_goids, branches);
+        results.craft_total = craft_total.getTotals();
+        for(int t = 0; t < tools.size(); t++){
+            String name = tools.get(t).getName();
+            ToolAggregate aggregate = aggregates.get(t);
+            this.metrics.count("annotations_parsed_total", "Annotations parsed", RunMetrics.label("tool", name),
+                    parsed[t + 1]);
+            aggregate.total.setUnique(aggregate.goids.cardinality());
+            results.tool_bucketed.put(name, bucketStatistics(aggregate.buckets));
+            results.tool_level_dist.put(name, levelDistribution(aggregate.goids, branches));
+            results.tool_totals.put(name, aggregate.total);
+            results.tool_avg_jaccard.put(name, aggregate.means);
+            results.tool_avg_mean_and_dev.put(name, calculateAvgAndDevForTool(aggregate.means));
+            if(this.overlap != null){
+                results.tool_lenient_totals.put(name, lenient_aggregates.get(t).total);
+                results.tool_lenient_avg_mean_and_dev.put(name,
+                        calculateAvgAndDevForTool(lenient_aggregates.get(t).means));
+            }
+        }
+        return results;
+    }
 
-                        //cycle through double quotes to get to the final end index
-                        symbolIndex = prevline.indexOf("\"");
-                        nextSymbolIndex = prevline.indexOf("\"", symbolIndex+1);
-                        symbolIndex = prevline.indexOf("\"", nextSymbolIndex+1);
-                        nextSymbolIndex = prevline.indexOf("\"", symbolIndex+1);
-                        end = prevline.substring(symbolIndex+1, nextSymbolIndex);
-                        ender = Integer.parseInt(end);
-                        tempAnno.setEndIndex(ender);
+    /***
+     * loadPaper reads a paper's CRAFT annotations and each tool's annotations, and scores each tool against CRAFT.
+     * @param key - paper ID (filename)
+     * @param sources - files of each paper: CRAFT go_cc, CRAFT go_bpmf, then each tool
+     * @param tools - tools to evaluate
+     * @return annotations and scores for the paper
+     */
+    private StreamedPaper loadPaper(String key, List<Map<String, File>> sources, List<ToolSource> tools){
+        StreamedPaper paper = new StreamedPaper(tools.size());
+        AnnotationStore bpmf;
+
+        //merge the CRAFT go_cc and go_bpmf annotations
+        paper.craft = readPaper(sources.get(0).get(key), ToolSource.Dialect.KNOWTATOR);
+        bpmf = readPaper(sources.get(1).get(key), ToolSource.Dialect.KNOWTATOR);
+        if(paper.craft == null){
+            paper.craft = bpmf;
+        }
+        else if(bpmf != null){
+            paper.craft.addAll(bpmf);
+            paper.craft.sortByEnd();
+        }
 
+        for(int t = 0; t < tools.size(); t++){
+            paper.tools[t] = readPaper(sources.get(t + 2).get(key), tools.get(t).getDialect());
+            if(paper.tools[t] == null){
+                continue;
+            }
+            //check papers the tool also annotated
+            if(paper.craft != null){
+                paper.results[t] = scorePaper(paper.craft, paper.tools[t]);
+                if(this.overlap != null){
+                    paper.lenient[t] = scorePaperOverlap(paper.craft, paper.tools[t]);
+                }
+            }
+        }
+        return paper;
+    }
 
-                        //pull term
-                        symbolIndex = line.indexOf(">");
-                        nextSymbolIndex = line.lastIndexOf("<");
-                        text = line.substring(symbolIndex+1, nextSymbolIndex);
-                        tempAnno.setTerm(text);
+    /***
+     * listPapers finds the annotation file of each paper in a directory.
+     * @param annoDirectory - directory of annotation files
+     * @param dialect - format of the files
+     * @return map with the paper ID (filename) as a key and its file as a value
+     */
+    private Map<String, File> listPapers(File annoDirectory, ToolSource.Dialect dialect){
+        Map<String, File> files = new HashMap<>();
+        File[] listing = annoDirectory.listFiles();
+        String filename;
+        if(listing == null){
+            System.out.println("Error: Cannot read directory " + annoDirectory);
+            return files;
+        }
+        for(File f: listing){
+            filename = f.getName();
+            //Knowtator files are named after their text source (11532192.txt.knowtator.xml)
+            if(dialect == ToolSource.Dialect.KNOWTATOR && filename.contains(".txt")){
+                filename = filename.substring(0, filename.indexOf(".txt"));
+            }
+            else if(filename.length() > 4){
+                filename = filename.substring(0, filename.length()-4);
+            }
+            files.put(filename, f);
+        }
+        return files;
+    }
+
+    /***
+     * readPaper reads the annotations of a single paper.
+     * @param file - annotation file of the paper, or null if there is none
+     * @param dialect - format of the file
+     * @return annotations for the paper, or null if there are none
+     */
+    private AnnotationStore readPaper(File file, ToolSource.Dialect dialect){
+        Map<String, AnnotationStore> paper = new HashMap<>();
+        AnnotationStore annotations;
+        if(file == null){
+            return null;
+        }
+        if(dialect == ToolSource.Dialect.KNOWTATOR){
+            readKnowtator(file, this.xml_factories.get(), paper);
+            return paper.isEmpty() ? null : paper.values().iterator().next();
+        }
+        annotations = new AnnotationStore(this.strings, this.go_ids);
+        try{
+            this.paper_readers.get().read(file, annotations::add);
+        }catch(IOException ex){
+            System.out.println("Error: File " + file + " not found.");
+            return null;
+        }
+        return annotations;
+    }
+
+    /***
+     * collectIDs reads every annotation file of the given sources once, so the GO dictionary holds each GO:ID they
+     * refer to before the ontology is set up. The annotations are not kept.
+     * @param sources - tools (or CRAFT directories) to read
+     */
+    private void collectIDs(List<ToolSource> sources){
+        for(ToolSource source: sources){
+            Map<String, File> files = listPapers(source.getInputDirectory(), source.getDialect());
+            forEachPaper(files.keySet(), key -> {
+                readPaper(files.get(key), source.getDialect());
+                return null;
+            });
+        }
+        this.metrics.set("referenced_goids", "GO:IDs referenced by the annotations", "", this.go_ids.size());
+    }
+
+    /***
+     * setParallelism sets the number of papers that are evaluated at once. Results are merged in the same order as a
+     * sequential run, so the output does not depend on the parallelism.
+     * @param threads - number of worker threads; 1 or less evaluates papers sequentially
+     */
+    private void setParallelism(int threads){
+        if(this.pool != null){
+            this.pool.shutdown();
+            this.pool = null;
+        }
+        if(threads > 1){
+            this.pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "paper-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /***
+     * forEachPaper applies work to each paper, concurrently when a pool is set up. Results are collected in the order
+     * of the given papers; papers with a null result are left out.
+     * @param papers - paper IDs (filenames) to evaluate
+     * @param work - evaluation for a single paper
+     * @return map with the filename as a key and its result as a value
+     */
+    private <T> Map<String, T> forEachPaper(Collection<String> papers, Function<String, T> work){
+        Map<String, T> results = new HashMap<>();
+        T result;
+        if(this.pool == null){
+            for(String key: papers){
+                result = work.apply(key);
+                if(result != null){
+                    results.put(key, result);
+                }
+            }
+            return results;
+        }
+
+        //submit every paper, then collect in the submitted order
+        List<String> keys = new ArrayList<>(papers);
+        List<Future<T>> futures = new ArrayList<>(keys.size());
+        for(String key: keys){
+            futures.add(this.pool.submit(() -> work.apply(key)));
+        }
+        for(int i = 0; i < keys.size(); i++){
+            try{
+                result = futures.get(i).get();
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating paper " + keys.get(i), ex);
+            }catch(ExecutionException ex){
+                throw new IllegalStateException("Error: Could not evaluate paper " + keys.get(i), ex.getCause());
+            }
+            if(result != null){
+                results.put(keys.get(i), result);
+            }
+        }
+        return results;
+    }
+
+    /***
+     * pullCRAFTAnnos retrieves the annotations from the annotation files in the passed directory. Each Knowtator XML
+     * file is streamed once; annotations refer to their GO:ID through a mention ID, which is resolved through a map of
+     * the mentions in the file.
+     * @param annoDirectory - directory of CRAFT annotations
+     * @return map with the filename as a key and a store of its respective annotations as a value
+     */
+    private Map<String, AnnotationStore> pullCRAFTAnnos(File annoDirectory){
+        Map<String, AnnotationStore> craftAnnos = new HashMap<>();
+        XMLInputFactory xmlFactory = this.xml_factories.get();
 
-                        scan.nextLine();
-                        annotations.add(tempAnno);
+        for (File file: annoDirectory.listFiles()){
+            readKnowtator(file, xmlFactory, craftAnnos);
+        }
+        return craftAnnos;
+    }
+
+    /***
+     * readKnowtator reads the annotations of a single Knowtator XML file.
+     * @param file - Knowtator XML file of one paper
+     * @param xmlFactory - factory for the XML stream reader
+     * @param craftAnnos - map the paper's annotations are added to, with the paper's filename as a key
+     */
+    private void readKnowtator(File file, XMLInputFactory xmlFactory, Map<String, AnnotationStore> craftAnnos){
+        AnnotationStore annotations;
+        Map<String, List<Integer>> mentions;        //mention ID -> rows of the annotations using it
+        Map<String, String[]> classMentions;        //mention ID -> GO:ID and reference term
+        int tempAnno = -1;                          //row of the annotation being read
+        XMLStreamReader xml;
+        String filename, element, class_id = null, go_id, ref;
+        boolean firstSpan = false;
+
+        try(InputStream in = new BufferedInputStream(new FileInputStream(file))){
+            xml = xmlFactory.createXMLStreamReader(in);
+            annotations = new AnnotationStore(this.strings, this.go_ids);
+            mentions = new HashMap<>();
+            classMentions = new HashMap<>();
+            filename = null;
+
+            while(xml.hasNext()){
+                if(xml.next() != XMLStreamConstants.START_ELEMENT){
+                    if(xml.isEndElement() && xml.getLocalName().equals("annotation")){
+                        tempAnno = -1;
                     }
-                    //check if GO:ID reference
-                    else if(line.contains("<classMention ")){
-                        //pull mention ID, GO:ID referred by mention ID, and reference term
-                        class_id = line.substring(line.indexOf("\"")+1, line.lastIndexOf("\""));
-                        line = scan.nextLine();
-                        go_id = line.substring(line.indexOf("\"")+1, line.lastIndexOf("\""));
-                        //check if ref has synonyms
-                        if(line.contains("({")){
-                            parenindex = line.indexOf("({")-1;
-                        }
-                        else{
-                            parenindex = line.lastIndexOf("<");
-                        }
-                        //remove any synonyms or parenthesis statements
-                        ref = line.substring(line.indexOf(">")+1, parenindex);
-                        if(ref.contains("(") && ref.indexOf(")")-1 > ref.indexOf("(")+1)
-                        {
-                            ref = ref.substring(0, ref.indexOf("("));
-//                            boolean bool = true;
+                    continue;
+                }
+                element = xml.getLocalName();
+                switch(element){
+                    case "annotations":
+                        //retrieve file name from the text source
+                        filename = xml.getAttributeValue(null, "textSource");
+                        filename = filename.substring(0, filename.length()-4);
+                        break;
+                    case "annotation":
+                        tempAnno = annotations.add(-1, -1, "", "", "");
+                        firstSpan = true;
+                        break;
+                    case "mention":
+                        //annotation refers to its GO:ID through a mention ID
+                        if(tempAnno >= 0){
+                            class_id = xml.getAttributeValue(null, "id");
+                            annotations.setID(tempAnno, class_id);
+                            mentions.computeIfAbsent(class_id, k -> new ArrayList<>(1)).add(tempAnno);
                         }
-                        //if annotation uses mention ID, replace with GO:ID and assign reference term
-                        for (Annotation a: annotations){
-                            if(a.getID().equals(class_id)){
-                                a.setID(go_id);
-                                a.setRef(ref);
+                        break;
+                    case "span":
+                        //*can have multiple start/end indexes if text spans out*; each is kept as a span
+                        if(tempAnno >= 0){
+                            if(firstSpan){
+                                annotations.setStart(tempAnno,
+                                        Integer.parseInt(xml.getAttributeValue(null, "start")));
+                                annotations.setEnd(tempAnno, Integer.parseInt(xml.getAttributeValue(null, "end")));
+                                firstSpan = false;
+                            }
+                            else{
+                                annotations.addSpan(tempAnno, Integer.parseInt(xml.getAttributeValue(null, "start")),
+                                        Integer.parseInt(xml.getAttributeValue(null, "end")));
                             }
                         }
-                    }
+                        break;
+                    case "spannedText":
+                        //pull term
+                        if(tempAnno >= 0){
+                            annotations.setTerm(tempAnno, xml.getElementText());
+                        }
+                        break;
+                    case "classMention":
+                        class_id = xml.getAttributeValue(null, "id");
+                        break;
+                    case "mentionClass":
+                        //pull GO:ID referred by mention ID and reference term
+                        go_id = xml.getAttributeValue(null, "id");
+                        ref = stripRef(xml.getElementText());
+                        classMentions.put(class_id, new String[]{go_id, ref});
+                        break;
+                    default:
+                        break;
                 }
-                annotations.sort(Comparator.comparing(Annotation::getEndIndex));
-                craftAnnos.put(filename, annotations);
-            }catch (FileNotFoundException ex){
-                System.out.println("Error: File not found. File: " + file);
             }
+            xml.close();
+
+            //if annotation uses mention ID, replace with GO:ID and assign reference term
+            for(Map.Entry<String, String[]> mention: classMentions.entrySet()){
+                for(int a: mentions.getOrDefault(mention.getKey(), Collections.emptyList())){
+                    annotations.setID(a, mention.getValue()[0]);
+                    annotations.setRef(a, mention.getValue()[1]);
+                }
+            }
+            if(filename == null){
+                System.out.println("Error: No text source in file " + file);
+                return;
+            }
+            annotations.sortByEnd();
+            craftAnnos.put(filename, annotations);
+        }catch (FileNotFoundException ex){
+            System.out.println("Error: File not found. File: " + file);
+        }catch (IOException | XMLStreamException | NumberFormatException ex){
+            System.out.println("Error: Could not parse file " + file);
         }
-        return craftAnnos;
+    }
+
+    /***
+     * stripRef removes any synonyms or parenthesis statements from a CRAFT reference term.
+     * @param ref - reference term of a class mention
+     * @return reference term without synonyms or parenthesis statements
+     */
+    private String stripRef(String ref){
+        //check if ref has synonyms
+        if(ref.contains("({")){
+            ref = ref.substring(0, Math.max(0, ref.indexOf("({")-1));
+        }
+        //remove any parenthesis statements
+        if(ref.contains("(") && ref.indexOf(")")-1 > ref.indexOf("(")+1)
+        {
+            ref = ref.substring(0, ref.indexOf("("));
+        }
+        return ref;
     }
 
     /***
@@ -364,9 +1061,9 @@ public class averageJaccard {
      * @param map2 - map of CRAFT go_bpmf annotations
      * @return merged mapping of all CRAFT annotations
      */
-    private Map<String, List<Annotation>> mergeMaps(Map<String, List<Annotation>> map1,
-                                                    Map<String, List<Annotation>> map2){
-        List<Annotation> list1, list2;
+    private Map<String, AnnotationStore> mergeMaps(Map<String, AnnotationStore> map1,
+                                                    Map<String, AnnotationStore> map2){
+        AnnotationStore list1, list2;
 
         //check 2nd map
         for(String key: map2.keySet()){
@@ -375,7 +1072,7 @@ public class averageJaccard {
                 list1 = map1.get(key);
                 list2 = map2.get(key);
                 list1.addAll(list2);
-                list1.sort(Comparator.comparing(Annotation::getEndIndex));
+                list1.sortByEnd();
                 map1.replace(key, list1);
             }
             //if map1 does not have the same key, then add key/value pair to map1
@@ -392,59 +1089,20 @@ public class averageJaccard {
      * @param annoDirectory - directory containing multiple annotation files (.tsv)
      * @return map of annotations per file for a tool
      */
-    private Map<String, List<Annotation>> pullAnnos(File annoDirectory){
-        Map<String, List<Annotation>> annoMap = new HashMap<>();
-        List<Annotation> annotations;
-        Scanner scan;
-        Annotation a;
-        String filename, startIndex, endIndex, line;
-        String[] values, fix;
-        int start, end, longestRef = 0;
+    private Map<String, AnnotationStore> pullAnnos(File annoDirectory){
+        Map<String, AnnotationStore> annoMap = new HashMap<>();
+        String filename;
 
         for(File f: annoDirectory.listFiles()){
             filename = f.getName();
             filename = filename.substring(0, filename.length()-4);
+            AnnotationStore annotations = new AnnotationStore(this.strings, this.go_ids);
             try{
-                scan = new Scanner(f);
-                annotations = new ArrayList<>();
-                //skip headers
-                scan.nextLine();
                 //pull each annotation and set the values
-                while(scan.hasNextLine()){
-                    line = scan.nextLine();
-                    values = line.split("\t");
-                    a = new Annotation();
-                    //textpresso annotations have some blank values, fix if necessary
-                    if(values.length == 4){
-                        if(!(Integer.parseInt(values[0]) >= 0)){
-                            values[0] = "-1";
-                        }
-                        else if(!(Integer.parseInt(values[1]) >= 0)){
-                            values[1] = "-1";
-                        }
-                        else if(!(values[2].contains("GO:"))){
-                            values[2] = "N/A";
-                        }
-                        else{
-                            fix = Arrays.copyOf(values, 5);
-                            fix[4] = "N/A";
-                            values = fix;
-                        }
-                    }
-                    startIndex = values[0];
-                    start = Integer.parseInt(startIndex);
-                    a.setStartIndex(start);
-                    endIndex = values[1];
-                    end = Integer.parseInt(endIndex);
-                    a.setEndIndex(end);
-                    a.setID(values[2]);
-                    a.setTerm(values[3]);
-                    a.setRef(values[4]);
-                    annotations.add(a);
-                }
+                tsv_reader.read(f, annotations::add);
                 //add each file and annotations pair to map
                 annoMap.put(filename, annotations);
-            }catch(FileNotFoundException ex){
+            }catch(IOException ex){
                 System.out.println("Error: File " + filename + " not found.");
             }
         }
@@ -452,12 +1110,85 @@ public class averageJaccard {
     }
 
     /***
-     * pullIDs pulls the GO:IDs from a file (BP, CC, MF)
+     * pullAnnos pulls the annotations of a tool, reading its files in the tool's dialect.
+     * @param tool - tool to pull annotations for
+     * @return map of annotations per file for the tool
+     */
+    private Map<String, AnnotationStore> pullAnnos(ToolSource tool){
+        Map<String, AnnotationStore> annos;
+        RunMetrics.Stage stage = this.metrics.stage("parse", tool.getName());
+        long start = System.nanoTime();
+        annos = pullCached(tool.getOutputName(), tool.getInputDirectory(), tool.getDialect());
+        recordParse(tool.getName(), annos, System.nanoTime() - start);
+        stage.end();
+        return annos;
+    }
+
+    /***
+     * pullCached pulls the annotations of a directory from its segment in the annotation cache. The directory is only
+     * parsed, and its segment written, when it has no segment or its files changed since the segment was written.
+     * @param name - name of the segment
+     * @param annoDirectory - directory of annotation files
+     * @param dialect - format of the files
+     * @return map of annotations per file
+     */
+    private Map<String, AnnotationStore> pullCached(String name, File annoDirectory, ToolSource.Dialect dialect){
+        Map<String, AnnotationStore> annos;
+        AnnotationCache cache = null;
+        String fingerprint = null;
+
+        if(this.cache_directory != null){
+            cache = new AnnotationCache(this.cache_directory, name);
+            fingerprint = AnnotationCache.fingerprint(annoDirectory);
+            annos = cache.load(fingerprint, this.strings, this.go_ids);
+            this.metrics.count(annos != null ? "annotation_cache_hits_total" : "annotation_cache_misses_total",
+                    annos != null ? "Directories loaded from the annotation cache"
+                            : "Directories parsed because their annotation cache was missing or outdated",
+                    RunMetrics.label("segment", name), 1);
+            if(annos != null){
+                return annos;
+            }
+        }
+
+        switch(dialect){
+            case KNOWTATOR:
+                annos = pullCRAFTAnnos(annoDirectory);
+                break;
+            case TSV:
+            default:
+                annos = pullAnnos(annoDirectory);
+                break;
+        }
+        if(cache != null){
+            cache.save(fingerprint, annos);
+        }
+        return annos;
+    }
+
+    /***
+     * recordParse records the number of annotations parsed for a tool and the parse rate.
+     * @param tool - name of the tool
+     * @param annos - map of annotations per file for the tool
+     * @param nanos - time spent parsing
+     */
+    private void recordParse(String tool, Map<String, AnnotationStore> annos, long nanos){
+        long total = 0;
+        for(AnnotationStore paper: annos.values()){
+            total += paper.size();
+        }
+        this.metrics.count("annotations_parsed_total", "Annotations parsed", RunMetrics.label("tool", tool), total);
+        this.metrics.set("parse_annotations_per_second", "Annotations parsed per second",
+                RunMetrics.label("tool", tool), nanos == 0 ? 0.0 : total / (nanos / 1e9));
+    }
+
+    /***
+     * pullIDs pulls the GO:IDs from a file (BP, CC, MF) and maps them to their branch. An ID already mapped to an
+     * earlier branch keeps that branch.
      * @param idFile - file containing the IDs within a branch of the GO
-     * @return list containing the IDs within a branch of the GO
+     * @param branch - branch of the GO the file contains
+     * @param branches - map of GO:IDs to their branch
      */
-    private List<String> pullIDs(File idFile){
-        List<String> ids = new ArrayList<>();
+    private void pullIDs(File idFile, Branch branch, Map<String, Branch> branches){
         String line, id;
         String[] goidMappings;
         try {
@@ -466,222 +1197,378 @@ public class averageJaccard {
                 line = scan.nextLine();
                 goidMappings = line.split("\t");
                 id = goidMappings[0].replace("_", ":");
-                if(!ids.contains(id)){
-                    ids.add(id);
+                branches.putIfAbsent(id, branch);
+            }
+        }catch (FileNotFoundException ex){
+            System.out.println("Error: File not found.");
+        }
+    }
+
+    /***
+     * scorePapers scores each paper a tool shares with CRAFT. Papers whose CRAFT and tool annotations, and the
+     * ontology, are unchanged since the last run are taken from the tool's result cache instead of being scored again.
+     * @param tool - name of the tool
+     * @param craft - map of CRAFT annotations to each file
+     * @param toolannos - map of tool annotations to each file
+     * @return map with the filename as a key and the paper's scores as a value
+     */
+    private Map<String, ResultCache.PaperResult> scorePapers(String tool, Map<String, AnnotationStore> craft,
+                                                             Map<String, AnnotationStore> toolannos){
+        return scorePapers(tool, craft, toolannos, false);
+    }
+
+    /***
+     * scorePapers scores each paper a tool shares with CRAFT, with exact or lenient (overlap) matching. Lenient results
+     * are cached apart from exact ones, per overlap mode.
+     * @param tool - name of the tool
+     * @param craft - map of CRAFT annotations to each file
+     * @param toolannos - map of tool annotations to each file
+     * @param lenient - true to count overlapping spans as matches
+     * @return map with the filename as a key and the paper's scores as a value
+     */
+    private Map<String, ResultCache.PaperResult> scorePapers(String tool, Map<String, AnnotationStore> craft,
+                                                             Map<String, AnnotationStore> toolannos, boolean lenient){
+        ResultCache cache = null;
+        Map<String, ResultCache.PaperResult> results;
+        String name = tool.toLowerCase();
+        if(lenient){
+            name += "." + this.overlap.name().toLowerCase()
+                    + (this.overlap == Overlap.RATIO ? "-" + this.overlap_ratio : "");
+        }
+        if(this.cache_directory != null && this.go_version != null){
+            cache = new ResultCache(this.cache_directory, name);
+        }
+        final ResultCache paper_cache = cache;
+
+        //check papers the tool also annotated
+        results = forEachPaper(craft.keySet(), key -> {
+            ResultCache.PaperResult result;
+            String cache_key;
+            if(!toolannos.containsKey(key)){
+                return null;
+            }
+            if(paper_cache == null){
+                return lenient ? scorePaperOverlap(craft.get(key), toolannos.get(key))
+                        : scorePaper(craft.get(key), toolannos.get(key));
+            }
+            cache_key = ResultCache.key(paperDigest(toolannos.get(key)), paperDigest(craft.get(key)),
+                    this.go_version);
+            result = paper_cache.get(key, cache_key);
+            if(result == null){
+                result = lenient ? scorePaperOverlap(craft.get(key), toolannos.get(key))
+                        : scorePaper(craft.get(key), toolannos.get(key));
+                paper_cache.put(key, cache_key, result);
+            }
+            return result;
+        });
+
+        if(cache != null){
+            String labels = RunMetrics.label("tool", tool) + (lenient ? "," + RunMetrics.label("matching", "overlap")
+                    : "");
+            this.metrics.count("result_cache_hits_total", "Papers taken from the result cache", labels,
+                    cache.getHits());
+            this.metrics.count("result_cache_misses_total", "Papers scored because they were not in the result cache",
+                    labels, cache.getMisses());
+            this.metrics.set("result_cache_hit_ratio", "Share of papers taken from the result cache", labels,
+                    cache.getHits() + cache.getMisses() == 0 ? 0.0
+                            : (double) cache.getHits() / (cache.getHits() + cache.getMisses()));
+            cache.save();
+        }
+        return results;
+    }
+
+    /***
+     * scorePaper scores a tool's annotations for a single paper against CRAFT's in one pass over the CRAFT annotations.
+     * Each tool annotation with the same spans as a CRAFT annotation is an exact match (same GO:ID) or a partial match
+     * (different GO:ID); its Jaccard value is calculated once and used for both the paper's Jaccard values and the
+     * word count bucket of the CRAFT reference term.
+     * @param craftannos - CRAFT annotations for the paper
+     * @param toolannos - tool annotations for the paper
+     * @return counts, partial matches, Jaccard values, and Jaccard values bucketed by ref word count for the paper
+     */
+    private ResultCache.PaperResult scorePaper(AnnotationStore craftannos, AnnotationStore toolannos){
+        SpanIndex index = new SpanIndex(toolannos);
+        PaperScorer scorer = new PaperScorer(craftannos, toolannos);
+        int[] ranges;
+        int craftreflength, row;
+        boolean flag;
+
+        //match every CRAFT span against the tool's spans at once, by outer bounds
+        ranges = index.join(craftannos.getStarts(), craftannos.getEnds(), craftannos.size());
+
+        for(int a = 0; a < craftannos.size(); a++){
+            //bucket out depending on length of ref term
+            craftreflength = craftannos.getRefWordCount(a);
+            //only tool annotations with the same indices; discontinuous annotations must also have the same gaps
+            flag = false;
+            for(int j = ranges[a * 2]; j < ranges[a * 2 + 1]; j++){
+                row = index.getRow(j);
+                if(craftannos.sameSpans(a, toolannos, row)){
+                    scorer.match(a, row, craftreflength);
+                    flag = true;
+                }
+            }
+            //if CRAFT has annotation at indices but tool does not, increase false negatives
+            if(!flag){
+                scorer.miss();
+            }
+        }
+        //total new annotations that the tool created
+        return scorer.result(toolannos.size() - (scorer.exacts + scorer.partialMatchList.size()));
+    }
+
+    /***
+     * scorePaperOverlap scores a tool's annotations for a single paper against CRAFT's, counting tool annotations whose
+     * span overlaps a CRAFT span (under the overlap mode) as matches. Both sets of spans are swept in start order (see
+     * OverlapSweep), so each CRAFT span is only compared with the spans around it. Discontinuous annotations are swept
+     * by their outer bounds and compared by their spans.
+     * @param craftannos - CRAFT annotations for the paper
+     * @param toolannos - tool annotations for the paper
+     * @return counts, partial matches, Jaccard values, and Jaccard values bucketed by ref word count for the paper;
+     *         new annotations are counted as in scorePaper (tool annotations minus matches), so the two are comparable
+     */
+    private ResultCache.PaperResult scorePaperOverlap(AnnotationStore craftannos, AnnotationStore toolannos){
+        PaperScorer scorer = new PaperScorer(craftannos, toolannos);
+        OverlapSweep sweep = new OverlapSweep(toolannos);
+        int[] craftorder = craftannos.startOrder();
+        int active, a, b, craftreflength;
+        boolean flag;
+
+        for(int i = 0; i < craftorder.length; i++){
+            a = craftorder[i];
+            craftreflength = craftannos.getRefWordCount(a);
+            active = sweep.advance(craftannos.getStart(a), craftannos.getEnd(a));
+            flag = false;
+            for(int j = 0; j < active; j++){
+                b = sweep.active[j];
+                if(overlaps(craftannos, a, toolannos, b)){
+                    scorer.match(a, b, craftreflength);
+                    flag = true;
                 }
             }
-        }catch (FileNotFoundException ex){
-            System.out.println("Error: File not found.");
+            if(!flag){
+                scorer.miss();
+            }
         }
+        //total new annotations, counted as in scorePaper
+        return scorer.result(toolannos.size() - (scorer.exacts + scorer.partialMatchList.size()));
+    }
 
-        return ids;
+    /***
+     * overlaps checks whether a tool annotation's spans match a CRAFT annotation's spans under the overlap mode.
+     * Equal spans always match; only the characters inside the spans of a discontinuous annotation count.
+     * @param craftannos - CRAFT annotations for the paper
+     * @param a - row of the CRAFT annotation
+     * @param toolannos - tool annotations for the paper
+     * @param b - row of the tool annotation
+     * @return true if the spans match
+     */
+    private boolean overlaps(AnnotationStore craftannos, int a, AnnotationStore toolannos, int b){
+        int overlap, length, toollength;
+        if(craftannos.sameSpans(a, toolannos, b)){
+            return true;
+        }
+        overlap = craftannos.sharedLength(a, toolannos, b);
+        if(overlap <= 0){
+            return false;
+        }
+        length = craftannos.spanLength(a);
+        toollength = toolannos.spanLength(b);
+        switch(this.overlap){
+            case CONTAINMENT:
+                //one annotation's text lies within the other's
+                return overlap == length || overlap == toollength;
+            case RATIO:
+                //shared characters over the characters of both annotations
+                return overlap >= this.overlap_ratio * (length + toollength - overlap);
+            case ANY:
+            default:
+                return true;
+        }
     }
 
     /***
-     * annotationComparison counts the number of total and partial annotation matches, as well as newly created
-     * annotations, for a tool vs. the CRAFT corpus. It also creates a list of the partial matches (GO:IDs that were
-     * matched by CRAFT and tool, and indices of the tagged term).
-     * Annotation matches are based upon GO:ID match and beginning and ending indicies for a term.
-     * @param craft - map of CRAFT annotations to each file
-     * @param tool - map of tool annotations to each file
-     * @return map that contains the total number of exact and partial matches, total number of new annotations created
-     * by the tool, and a list of the partial matches (GO:ID from CRAFT and GO:ID from tool). This maps to each filename.
-     */
-    private Map<String, CountsAndPartials> compareAnnotations(Map<String, List<Annotation>> craft,
-                                                                       Map<String,List<Annotation>> tool){
-        Map<String, CountsAndPartials> countsperpaper = new HashMap<>();
-        PartialMatch pm;
-        List<Annotation> craftannos, toolannos;
-        /*
-        Counts for total number of exact matches for a tool, total number of partial matches for a tool,
-        total number of newly created annotations for a tool, total number of annotations for the CRAFT Corpus.
-         */
-        boolean flag;
-        //pull craft keys and lists
-        for(String key: craft.keySet()){
-            craftannos = craft.get(key);
-            CountsAndPartials counts = new CountsAndPartials();
-            List<PartialMatch> partialMatchList = new ArrayList<>();
-            //check if tool contains key
-            if(tool.containsKey(key)){
-                //pull list of annos and check against craft
-                toolannos = tool.get(key);
-                for(Annotation a: craftannos){
-                    flag = false;
-                    for(Annotation b: toolannos){
-                        //if both contain same indices
-                        if(a.getStartIndex() == b.getStartIndex() && a.getEndIndex() == b.getEndIndex()){
-                            flag = true;
-                            //same GO:ID?
-                            if(a.getID().equals(b.getID())){
-                                counts.setExacts(counts.getExacts()+1); //both same, add to total match count
-                            }
-                            else{
-                                //tagged term at indices, but incorrect GO:ID
-                                pm = new PartialMatch(a.getID(), b.getID());
-                                counts.setPartials(counts.getPartials()+1); //up the count for partial match
-                                partialMatchList.add(pm); //add new partial match
-                            }
-                        }
-                    }
-                    //if CRAFT has annotation at indices but tool does not, increase false negatives
-                    if(!flag){
-                        counts.setFalseNegatives(counts.getFalseNegatives()+1);
-                    }
-                }
-                //total new annotations that the tool created
-                counts.setNewAnnotations(toolannos.size() - (counts.getExacts() + counts.getPartials()));
-                counts.setMatches(partialMatchList);
-                //add counts/partial matches to map
-                countsperpaper.put(key, counts);
+     * paperDigest calculates a content hash of a paper's annotations (spans, GO:ID, and reference term), used to
+     * tell whether a paper's cached result is still valid.
+     * @param annos - annotations for the paper
+     * @return hex SHA-256 digest of the annotations
+     */
+    private String paperDigest(AnnotationStore annos){
+        MessageDigest digest;
+        ByteBuffer indices = ByteBuffer.allocate(8);
+        StringBuilder hex = new StringBuilder();
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        for(int a = 0; a < annos.size(); a++){
+            indices.clear();
+            indices.putInt(annos.getStart(a)).putInt(annos.getEnd(a));
+            digest.update(indices.array());
+            //inner bounds of a discontinuous annotation; single spans hash as before
+            for(int i = 1; i < annos.getSpanCount(a); i++){
+                indices.clear();
+                indices.putInt(annos.getSpanEnd(a, i - 1)).putInt(annos.getSpanStart(a, i));
+                digest.update(indices.array());
             }
+            digest.update(annos.getID(a).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(annos.getRef(a).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for(byte b: digest.digest()){
+            hex.append(String.format("%02x", b));
         }
-        return countsperpaper;
+        return hex.toString();
     }
 
     /***
-     * countUniqueGOs gets a total count of the unique GO:IDs for all annotations from a tool
-     * @param counts - CountsAndPartials object that stores the count for the unique GOs
+     * collectGOs gets the unique GO:IDs of all annotations from a tool
      * @param tool - map of annotations
+     * @return ordinals of the GO:IDs in the GO dictionary
      */
-    private void countUniqueGOs(CountsAndPartials counts, Map<String, List<Annotation>> tool){
-        List<String> goids = new ArrayList<>();
+    private BitSet collectGOs(Map<String, AnnotationStore> tool){
+        BitSet goids = new BitSet(this.go_ids.size());
         for(String key: tool.keySet()){
-            for(Annotation a: tool.get(key)){
-                if(!goids.contains(a.getID())){
-                    goids.add(a.getID());
-                }
-            }
+            addGOs(goids, tool.get(key));
+        }
+        return goids;
+    }
+
+    /***
+     * addGOs adds the GO:IDs of a paper's annotations to a set of GO dictionary ordinals.
+     * @param goids - ordinals of the GO:IDs seen so far
+     * @param annos - annotations for the paper
+     */
+    private void addGOs(BitSet goids, AnnotationStore annos){
+        for(int a = 0; a < annos.size(); a++){
+            goids.set(annos.getIDOrdinal(a));
         }
-        counts.setUnique(goids.size());
     }
 
     /***
      * totalCounts gets the total of each count within the CountsAndPartials for a tool.
-     * @param tool - map of counts and partials for each file of a particular tool
+     * @param tool - map of scores for each file of a particular tool
      * @return CountsAndPartials object that contains the total number of exact, partial, and new annotations for a tool.
      */
-    private CountsAndPartials totalCounts(Map<String, CountsAndPartials> tool){
-        CountsAndPartials total = new CountsAndPartials(), temp;
+    private CountsAndPartials totalCounts(Map<String, ResultCache.PaperResult> tool){
+        CountsAndPartials total = new CountsAndPartials();
         //total up the counts from each file
         for(String key : tool.keySet()){
-            temp = tool.get(key);
-            total.setExacts(total.getExacts() + temp.getExacts());
-            total.setPartials(total.getPartials() + temp.getPartials());
-            total.setNewAnnotations(total.getNewAnnotations() + temp.getNewAnnotations());
-            total.setFalseNegatives(total.getFalseNegatives() + temp.getFalseNegatives());
+            addCounts(total, tool.get(key));
         }
         return total;
     }
 
-    private Map<Integer, double[]> buckets(Map<String, List<Annotation>> craft){
+    /***
+     * addCounts adds the exact, partial, new annotation, and false negative counts of a paper to a tool's totals.
+     * @param total - totals of the tool
+     * @param paper - scores of the tool for the paper
+     */
+    private void addCounts(CountsAndPartials total, ResultCache.PaperResult paper){
+        total.setExacts(total.getExacts() + paper.getExacts());
+        total.setPartials(total.getPartials() + paper.getPartials());
+        total.setNewAnnotations(total.getNewAnnotations() + paper.getNewAnnotations());
+        total.setFalseNegatives(total.getFalseNegatives() + paper.getFalseNegatives());
+    }
+
+    private Map<Integer, double[]> buckets(Map<String, AnnotationStore> craft){
         Map<Integer, double[]> craftbucket = new HashMap<>();
-        double[] craftcount;
-        int craftreflength;
 
         for(String craftfile : craft.keySet()){
-            for(Annotation a : craft.get(craftfile)){
-                craftreflength = a.getRef().split(" ").length;
-                if(!craftbucket.containsKey(craftreflength)){
-                    craftcount = new double[1];
-                    craftcount[0] = 1;
-                    craftbucket.put(craftreflength, craftcount);
-                }
-                else{
-                    craftcount = craftbucket.get(craftreflength);
-                    craftcount[0]++;
-                    craftbucket.replace(craftreflength, craftcount);
-                }
-            }
+            addToBuckets(craftbucket, craft.get(craftfile));
         }
 
         return craftbucket;
     }
 
-    private Map<Integer, double[]> bucketsAndJaccards(Map<String, List<Annotation>> tool, 
-                                                      Map<String, List<Annotation>> craft){
+    /***
+     * addToBuckets counts a paper's CRAFT annotations into buckets by the word count of their reference term.
+     * @param craftbucket - word count -> number of annotations
+     * @param annos - CRAFT annotations for the paper
+     */
+    private void addToBuckets(Map<Integer, double[]> craftbucket, AnnotationStore annos){
+        double[] craftcount;
         int craftreflength;
-        Map<Integer, double[]> bucketsandmeanstddev = new HashMap<>();
-        Map<Integer, List<Double>> bucketandjaccard = new HashMap<>();
-        List<Double> jaccards;
-        double jaccard;
-        
-        //bucket out CRAFT refs and check if tool has annotation at position
-        for(String craftfile : craft.keySet()){
-            for(String toolfile : tool.keySet()){
-                //check if same file
-                if(craftfile.equals(toolfile)){
-                    //pull all craft annotations
-                    for(Annotation a : craft.get(craftfile)){
-                        //bucket out depending on length of ref term
-                        craftreflength = a.getRef().split(" ").length;
-                        //TEST
-//                        if(craftreflength > 10){
-//                            System.out.println(a.getRef());
-//                            System.out.println(a.getID());
-//                        }
-                        //check if tool has anno in same spot
-                        for(Annotation b: tool.get(toolfile)){
-                            if(a.getStartIndex() == b.getStartIndex() && a.getEndIndex() == b.getEndIndex()){
-                                //calculate jaccard
-                                if(a.getID().equals(b.getID())){
-                                    jaccard = 1.0;
-                                }
-                                else{
-                                    jaccard = calculateJaccard(a.getID(), b.getID());
-                                }
-                                //add jaccard to bucket map
-                                if(!(bucketandjaccard.containsKey(craftreflength))){
-                                    jaccards = new ArrayList<>();
-                                    jaccards.add(jaccard);
-                                    bucketandjaccard.put(craftreflength, jaccards);
-                                }
-                                else{
-                                    jaccards = bucketandjaccard.get(craftreflength);
-                                    jaccards.add(jaccard);
-                                    bucketandjaccard.replace(craftreflength, jaccards);
-                                }
-                            }
-                        }
-                    }
-                }
+        for(int a = 0; a < annos.size(); a++){
+            craftreflength = annos.getRefWordCount(a);
+            if(!craftbucket.containsKey(craftreflength)){
+                craftcount = new double[1];
+                craftcount[0] = 1;
+                craftbucket.put(craftreflength, craftcount);
             }
-        }
-        
-        //calculate mean and std dev for each bucket
-        for(Integer i : bucketandjaccard.keySet()) {
-            double[] tool_jsd = new double[3];
-            double mean = 0.0, temp = 0.0, stddev, twostandard;
-            //get all jaccards for current bucket and calculate mean
-            jaccards = bucketandjaccard.get(i);
-            for (double j : jaccards) {
-                mean += j;
+            else{
+                craftcount = craftbucket.get(craftreflength);
+                craftcount[0]++;
+                craftbucket.replace(craftreflength, craftcount);
             }
-            mean = mean / jaccards.size();
+        }
+    }
+
+    /***
+     * bucketsAndJaccards gets the count, mean, and 2nd standard error of the mean of a tool's Jaccard values in each
+     * word count bucket. The statistics of each paper are taken concurrently and merged in paper order.
+     * @param tool - map of scores for each file of a particular tool
+     * @param craft - map of CRAFT annotations to each file
+     * @return word count -> matching annotation count, mean, and 2 standard errors, rounded to two decimal places
+     */
+    private Map<Integer, double[]> bucketsAndJaccards(Map<String, ResultCache.PaperResult> tool,
+                                                      Map<String, AnnotationStore> craft){
+        Map<Integer, RunningStats> buckets = new HashMap<>();
+        Map<String, Map<Integer, RunningStats>> papers;
+
+        //statistics of each paper the tool also annotated
+        papers = forEachPaper(craft.keySet(), key -> tool.containsKey(key) ? bucketStatistics(tool.get(key)) : null);
+        for(String key: new TreeSet<>(papers.keySet())){
+            mergeBuckets(buckets, papers.get(key));
+        }
+        return bucketStatistics(buckets);
+    }
 
-            //calculate std dev
-            for (double j : jaccards) {
-                temp += (j - mean) * (j - mean);
+    /***
+     * bucketStatistics gets the statistics of a paper's Jaccard values in each word count bucket.
+     * @param paper - scores of a tool for the paper
+     * @return word count -> statistics of the Jaccard values
+     */
+    private Map<Integer, RunningStats> bucketStatistics(ResultCache.PaperResult paper){
+        Map<Integer, RunningStats> buckets = new HashMap<>();
+        for(Map.Entry<Integer, double[]> bucket: paper.getBuckets().entrySet()){
+            RunningStats stats = new RunningStats();
+            for(double j: bucket.getValue()){
+                stats.add(j);
             }
-            temp = temp / (jaccards.size() - 1);
-            stddev = Math.sqrt(temp);
+            buckets.put(bucket.getKey(), stats);
+        }
+        return buckets;
+    }
 
-            //calculate 2 standard errors of mean
-            twostandard = (2 * (stddev / (Math.sqrt(jaccards.size()))));
+    /***
+     * mergeBuckets merges the bucket statistics of a paper into a tool's.
+     * @param buckets - word count -> statistics of the tool
+     * @param paper - word count -> statistics of the paper
+     */
+    private void mergeBuckets(Map<Integer, RunningStats> buckets, Map<Integer, RunningStats> paper){
+        for(Map.Entry<Integer, RunningStats> bucket: paper.entrySet()){
+            buckets.computeIfAbsent(bucket.getKey(), k -> new RunningStats()).merge(bucket.getValue());
+        }
+    }
 
+    /***
+     * bucketStatistics gets the count, mean, and 2nd standard error of the mean of the Jaccard values in each word
+     * count bucket.
+     * @param buckets - word count -> running statistics of the Jaccard values
+     * @return word count -> matching annotation count, mean, and 2 standard errors, rounded to two decimal places
+     */
+    private Map<Integer, double[]> bucketStatistics(Map<Integer, RunningStats> buckets){
+        Map<Integer, double[]> bucketsandmeanstddev = new HashMap<>();
+        for(Map.Entry<Integer, RunningStats> bucket: buckets.entrySet()){
+            RunningStats stats = bucket.getValue();
             //round each value to two decimal places
-            mean = Math.round(mean * 100.0);
-            mean = mean / 100.0;
-            twostandard = Math.round(twostandard * 100.0);
-            twostandard = twostandard / 100.0;
-
-            //store matching annotation count, mean, and 2std
-            tool_jsd[0] = jaccards.size();
-            tool_jsd[1] = mean;
-            tool_jsd[2] = twostandard;
-            bucketsandmeanstddev.put(i, tool_jsd);
-        }
-        boolean bool = true;
+            bucketsandmeanstddev.put(bucket.getKey(), new double[]{stats.getCount(),
+                    Math.round(stats.getMean() * 100.0) / 100.0,
+                    Math.round(stats.getTwoStandardErrors() * 100.0) / 100.0});
+        }
         return bucketsandmeanstddev;
     }
 
@@ -689,333 +1576,470 @@ public class averageJaccard {
      * craftTotalCounts gets the total number of annotations and unique annotations in the corpus, and average
      * non-unique annotations per file.
      * @param craft_annos - map of annotations for each file in the corpus
+     * @param branches - map of GO:IDs to their branch
      * @return integer array containing the counts for the CRAFT
      */
-    private int[] getCRAFTTotalCounts(Map<String, List<Annotation>> craft_annos, List<String> bp_ids,
-                                         List<String> cc_ids, List<String> mf_ids){
+    private int[] getCRAFTTotalCounts(Map<String, AnnotationStore> craft_annos, Map<String, Branch> branches){
+        CraftTotals craft_total = new CraftTotals(branches);
+        for(String key: craft_annos.keySet()){
+            craft_total.add(craft_annos.get(key));
+        }
+        return craft_total.getTotals();
+    }
+
+    /***
+     * A CraftTotals keeps the total counts for CRAFT while papers are added one at a time.
+     */
+    private class CraftTotals{
         /* craft_total: [0] total annotations in corpus, [1] total unique annotations in corpus,
-        [2] avg nonunique annotations per paper, [3] total bp annotations, [4] total unique bp IDs, 
+        [2] avg nonunique annotations per paper, [3] total bp annotations, [4] total unique bp IDs,
         [5] total cc annotations, [6] total unique cc IDs, [7] total mf annotations, [8] total unique mf IDs,
         [9] total independent_continuants, [10] total annotations with ids not found, [11] total ids not found
          */
-        String id;
-        int[] craft_total = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
-        Map<String, Integer> craft_nonunique = new HashMap<>();
-        List<String> craft_goids = new ArrayList<>();
-        List<String> seen_bps = new ArrayList<>();
-        List<String> seen_ccs = new ArrayList<>();
-        List<String> seen_mfs = new ArrayList<>();
-        List<String> not_found = new ArrayList<>();
-        for(String key: craft_annos.keySet()){
-            int paper_nonunique, paper_total = 0;
-            List<String> paper_goids = new ArrayList<>();
-            for(Annotation a: craft_annos.get(key)){
+        private int[] craft_total = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        private Map<String, Branch> branches;                   //map of GO:IDs to their branch
+        private int total_nonunique = 0;                        //nonunique annotations summed over the papers
+        private int papers = 0;                                 //number of papers added
+        private Set<String> craft_goids = new HashSet<>();
+        private Set<String> seen_bps = new HashSet<>();
+        private Set<String> seen_ccs = new HashSet<>();
+        private Set<String> seen_mfs = new HashSet<>();
+        private Set<String> not_found = new HashSet<>();
+
+        //constructor
+        private CraftTotals(Map<String, Branch> branches){
+            this.branches = branches;
+        }
+
+        /***
+         * add counts the annotations of a paper.
+         * @param annos - CRAFT annotations for the paper
+         */
+        private void add(AnnotationStore annos){
+            String id;
+            Branch branch;
+            int paper_total = 0;
+            Set<String> paper_goids = new HashSet<>();
+            for(int a = 0; a < annos.size(); a++){
                 //increment total count of annotations for entire corpus
                 craft_total[0]++;
                 //increment total count of annotations for the current paper
                 paper_total++;
-                //keep track of the unique GO:IDs for the entire corpus
-                if(!craft_goids.contains(a.getID())){
-                    craft_goids.add(a.getID());
-                }
-                //keep track of the unique GO:IDs in the current paper
-                if(!paper_goids.contains(a.getID())){
-                    paper_goids.add(a.getID());
-                }
+                //keep track of the unique GO:IDs for the entire corpus and the current paper
+                id = annos.getID(a);
+                craft_goids.add(id);
+                paper_goids.add(id);
 
-                id = a.getID();
+                branch = branches.get(id);
                 if(id.equals("independent_continuant")){
                     craft_total[9]++;
                 }
                 //check if a BP annotation
-                else if(bp_ids.contains(id)){
-                    //increase total bp annotation count
+                else if(branch == Branch.BP){
+                    //increase total bp annotation count, and unique count if not "seen" yet
                     craft_total[3]++;
-                    if(!seen_bps.contains(id)){
-                        //increase unique bp annotation count and add to "seen" list
+                    if(seen_bps.add(id)){
                         craft_total[4]++;
-                        seen_bps.add(id);
                     }
                 }
                 //check if a CC annotation
-                else if(cc_ids.contains(id)){
-                    //increase total cc annotation count
+                else if(branch == Branch.CC){
+                    //increase total cc annotation count, and unique count if not "seen" yet
                     craft_total[5]++;
-                    if(!seen_ccs.contains(id)){
-                        //increase unique cc annotation count and add to "seen" list
+                    if(seen_ccs.add(id)){
                         craft_total[6]++;
-                        seen_ccs.add(id);
                     }
                 }
                 //check if a MF annotation
-                else if(mf_ids.contains(id)){
-                    //increase total mf annotation count
+                else if(branch == Branch.MF){
+                    //increase total mf annotation count, and unique count if not "seen" yet
                     craft_total[7]++;
-                    if(!seen_mfs.contains(id)){
-                        //increase unique mf annotation count and add to "seen" list
+                    if(seen_mfs.add(id)){
                         craft_total[8]++;
-                        seen_mfs.add(id);
                     }
                 }
                 else{
-                    //System.out.println("Error: ID " + id + " not found.");
-                    if(!not_found.contains(id)){
-                        not_found.add(id);
+                    if(not_found.add(id)){
                         craft_total[11]++;
                     }
                     craft_total[10]++;
                 }
             }
-            
-            //calculate the total number of nonunique annotations within a paper
-            paper_nonunique = paper_total - paper_goids.size();
-            craft_nonunique.put(key, paper_nonunique);
-        }
-        //calculate the average number of nonunique annotations in a paper
-        int total_nonunique = 0, avg_nonunique;
-        for(String key : craft_nonunique.keySet()){
-            total_nonunique += craft_nonunique.get(key);
-        }
-        avg_nonunique = total_nonunique / craft_nonunique.size();
-        //total number of unique annotations in corpus
-        craft_total[1] = craft_goids.size();
-        //average number of nonunique annotations in a paper
-        craft_total[2] = avg_nonunique;
-
-        return craft_total;
-    }
-
-    /***
-     * calculateAverageJaccards calculates the intersection and union of the superclasses for CRAFT and the tool GO:IDs.
-     * It then gets the Jaccard values and averages them.
-     * @param toolcounts - map containing the filename and the list of partial matches (GO:IDs)
-     * @return map containing the filename and the average Jaccard value
-     */
-    private Map<String, double[]> calculateJaccards(Map<String, CountsAndPartials> toolcounts){
-        Map<String, double[]> alljaccards = new HashMap<>();
-        CountsAndPartials counts;
-        double[] jaccards;
-        List<PartialMatch> partialMatches;
-        Set<String> all, inbetween;
-        String craftID, toolID;
-        int arrIndex, total_exacts;
-
-        //go through files and retrieve partial matches
-        for(String key: toolcounts.keySet()){
-            counts = toolcounts.get(key);
-            partialMatches = counts.getMatches();
-            total_exacts = counts.getExacts();
-            jaccards = new double[partialMatches.size() + total_exacts];
-            arrIndex = 0;
-            all = new HashSet<>();
-            inbetween = new HashSet<>();
-            if(partialMatches.size() != 0 || total_exacts != 0) {
-                if(partialMatches.size() != 0) {
-                    //calculate Jaccard similarities for CRAFT vs. tool
-                    for (PartialMatch pm : partialMatches) {
-                        craftID = pm.getCraftID();
-                        craftID = craftID.replace(":", "_");
-                        toolID = pm.getToolID();
-                        toolID = toolID.replace(":", "_");
-
-                        //get superclasses for craftID
-                        Set<OWLClass> craftsupersOWL = getSupers(craftID);
-                        Set<String> craftsupers = new HashSet<>();
-                        for (OWLClass owlClass : craftsupersOWL) {
-                            craftsupers.add(owlClass.getIRI().getShortForm());
-                        }
 
-                        //get superclasses for toolID
-                        Set<OWLClass> toolsupersOWL = getSupers(toolID);
-                        Set<String> toolsupers = new HashSet<>();
-                        for (OWLClass owlClass : toolsupersOWL) {
-                            toolsupers.add(owlClass.getIRI().getShortForm());
-                        }
+            //the total number of nonunique annotations within a paper
+            total_nonunique += paper_total - paper_goids.size();
+            papers++;
+        }
 
-                        //retrieve the intersection and union of the sets of superclasses
-                        Set<String> intersection = Sets.intersection(craftsupers, toolsupers);
-                        Set<String> union = Sets.union(craftsupers, toolsupers);
-
-                        //remove root from sets and add originating IDs into union set
-                        all.addAll(union);
-                        all.remove("Thing");
-                        all.add(craftID);
-                        all.add(toolID);
-                        inbetween.addAll(intersection);
-                        inbetween.remove("Thing");
-//                        System.out.println("Union: " + all);
-//                        System.out.println("Intersection: " + inbetween);
-                        //calculate jaccard values
-                        jaccards[arrIndex] = (double) (inbetween.size()) / (double) (all.size());
-
-                        //increase the index for jaccards
-                        arrIndex++;
-                    }
-                }
-                //add in exact matches; assign 1.0 jaccard values
-                for(int i = 0; i < total_exacts; i++){
-                    jaccards[arrIndex] = 1.0;
-                    arrIndex++;
-                }
-                alljaccards.put(key, jaccards);
+        /***
+         * getTotals gets the total counts of the papers added so far.
+         * @return integer array containing the counts for the CRAFT
+         */
+        private int[] getTotals(){
+            int[] totals = craft_total.clone();
+            //total number of unique annotations in corpus
+            totals[1] = craft_goids.size();
+            //average number of nonunique annotations in a paper
+            totals[2] = total_nonunique / papers;
+            return totals;
+        }
+    }
+
+    /***
+     * getJaccards gets the Jaccard values of each paper with matches.
+     * @param toolresults - map containing the filename and the paper's scores
+     * @return map containing the filename and the paper's Jaccard values
+     */
+    private Map<String, double[]> getJaccards(Map<String, ResultCache.PaperResult> toolresults){
+        Map<String, double[]> jaccards = new HashMap<>();
+        for(String key: toolresults.keySet()){
+            if(toolresults.get(key).getJaccards() != null){
+                jaccards.put(key, toolresults.get(key).getJaccards());
             }
         }
-        return alljaccards;
+        return jaccards;
     }
-    
-    private double calculateJaccard(String craftID, String toolID){
-        Set<String> all = new HashSet<>(), inbetween = new HashSet<>();
-        craftID = craftID.replace(":", "_");
-        toolID = toolID.replace(":", "_");
-
-        //get superclasses for craftID
-        Set<OWLClass> craftsupersOWL = getSupers(craftID);
-        Set<String> craftsupers = new HashSet<>();
-        for (OWLClass owlClass : craftsupersOWL) {
-            craftsupers.add(owlClass.getIRI().getShortForm());
-        }
-
-        //get superclasses for toolID
-        Set<OWLClass> toolsupersOWL = getSupers(toolID);
-        Set<String> toolsupers = new HashSet<>();
-        for (OWLClass owlClass : toolsupersOWL) {
-            toolsupers.add(owlClass.getIRI().getShortForm());
-        }
-
-        //retrieve the intersection and union of the sets of superclasses
-        Set<String> intersection = Sets.intersection(craftsupers, toolsupers);
-        Set<String> union = Sets.union(craftsupers, toolsupers);
-
-        //remove root from sets and add originating IDs into union set
-        all.addAll(union);
-        all.remove("Thing");
-        all.add(craftID);
-        all.add(toolID);
-        inbetween.addAll(intersection);
-        inbetween.remove("Thing");
-//                        System.out.println("Union: " + all);
-//                        System.out.println("Intersection: " + inbetween);
-        //calculate jaccard values
-        return((double) (inbetween.size()) / (double) (all.size()));
-    }
-
-    /***
-     * getSupers retrieves the superclasses of a GO:ID from the Gene Ontology
-     * @param goID - ID that the superclasses will be retrieved for
-     * @return set of superclasses
-     */
-    private Set<OWLClass> getSupers(String goID){
-        OWLClass owlClass = this.factory.getOWLClass(IRI.create(this.go_prefix + goID));
-        NodeSet<OWLClass> superClasses = this.reasoner.getSuperClasses(owlClass, false);
-        return superClasses.getFlattened();
-    }
-
-    private Map<String, List<Annotation>> calculateLongestPaths(Map<String, List<Annotation>> annos){
-        String id;
-        //get annotations per file
-        for(String key : annos.keySet()){
-            for(Annotation a : annos.get(key)){
-                //get the level of the annotation
-                id = a.getID().replace(":", "_");
-                if(id.equals("independent_continuant")){
-                    a.setLevel(-2);
+
+    /***
+     * resolveIDs resolves the level of every GO:ID in the GO dictionary and the Jaccard value of every distinct pair
+     * of CRAFT and tool GO:IDs the tools may be scored on, into a lookup table the scoring stages read from. Pairs are
+     * collected per paper, then resolved in parallel on the paper workers.
+     * @param craft - map of CRAFT annotations to each file
+     * @param tools - map of annotations to each file, for each tool
+     */
+    private void resolveIDs(Map<String, AnnotationStore> craft, List<Map<String, AnnotationStore>> tools){
+        GoLookup.Builder builder = new GoLookup.Builder();
+        Map<String, int[]> pairs;
+
+        for(Map<String, AnnotationStore> toolannos: tools){
+            pairs = forEachPaper(craft.keySet(), key -> toolannos.containsKey(key)
+                    ? candidatePairs(craft.get(key), toolannos.get(key)) : null);
+            for(int[] paper: pairs.values()){
+                for(int i = 0; i < paper.length; i += 2){
+                    builder.addPair(paper[i], paper[i + 1]);
                 }
-                else {
-                    a.setLevel(getLongestPathToID(id));
+            }
+        }
+        this.go_lookup = builder.build(this.go_index, this.go_ids, this.pool);
+
+        this.jaccard_queries.add(this.go_lookup.getPairCount());
+        this.depth_queries.add(this.go_lookup.getIDCount());
+        this.metrics.set("ontology_lookup_entries", "Values resolved into the lookup table before scoring",
+                RunMetrics.label("kind", "levels"), this.go_lookup.getIDCount());
+        this.metrics.set("ontology_lookup_entries", "Values resolved into the lookup table before scoring",
+                RunMetrics.label("kind", "jaccards"), this.go_lookup.getPairCount());
+    }
+
+    /***
+     * candidatePairs collects the pairs of CRAFT and tool GO:IDs in a paper that scoring calculates a Jaccard value
+     * for: annotations with the same spans, and overlapping annotations when lenient matching is on. Pairs with the
+     * same GO:ID are left out, as they are exact matches.
+     * @param craftannos - CRAFT annotations for the paper
+     * @param toolannos - tool annotations for the paper
+     * @return CRAFT and tool GO:ID ordinals of each pair, one after the other; pairs may repeat
+     */
+    private int[] candidatePairs(AnnotationStore craftannos, AnnotationStore toolannos){
+        OverlapSweep sweep = new OverlapSweep(toolannos);
+        int[] craftorder = craftannos.startOrder();
+        int[] pairs = new int[16];
+        int size = 0, active, a, b;
+
+        for(int i = 0; i < craftorder.length; i++){
+            a = craftorder[i];
+            active = sweep.advance(craftannos.getStart(a), craftannos.getEnd(a));
+            for(int j = 0; j < active; j++){
+                b = sweep.active[j];
+                if(craftannos.getIDOrdinal(a) != toolannos.getIDOrdinal(b) && (craftannos.sameSpans(a, toolannos, b)
+                        || (this.overlap != null && overlaps(craftannos, a, toolannos, b)))){
+                    if(size == pairs.length){
+                        pairs = Arrays.copyOf(pairs, size * 2);
+                    }
+                    pairs[size++] = craftannos.getIDOrdinal(a);
+                    pairs[size++] = toolannos.getIDOrdinal(b);
                 }
             }
         }
-        return annos;
+        return Arrays.copyOf(pairs, size);
+    }
+
+    /***
+     * calculateJaccard calculates the Jaccard value of the superclasses for a CRAFT and a tool GO:ID, using the
+     * precomputed superclass closures.
+     * @param craftID - GO:ID CRAFT returned
+     * @param toolID - GO:ID tool returned
+     * @return Jaccard value for the GO:ID pair
+     */
+    private double calculateJaccard(String craftID, String toolID){
+        return calculateJaccard(this.go_ids.encode(craftID), this.go_ids.encode(toolID));
+    }
+
+    /***
+     * calculateJaccard calculates the Jaccard value of the superclasses for a CRAFT and a tool GO:ID given by their
+     * ordinals in the GO dictionary. Pairs resolved before scoring are read from the lookup table; any other pair is
+     * calculated from the ontology index.
+     * @param craftID - ordinal of the GO:ID CRAFT returned
+     * @param toolID - ordinal of the GO:ID tool returned
+     * @return Jaccard value for the GO:ID pair
+     */
+    private double calculateJaccard(int craftID, int toolID){
+        double jaccard = this.go_lookup == null ? Double.NaN : this.go_lookup.jaccard(craftID, toolID);
+        if(Double.isNaN(jaccard)){
+            this.jaccard_queries.increment();
+            jaccard = this.go_index.jaccard(this.go_ids.getIndexOrdinal(craftID), this.go_ids.getIndexOrdinal(toolID),
+                    craftID == toolID);
+        }
+        return jaccard;
     }
 
+    /***
+     * getLongestPathToID retrieves the GO:ID's level in the ontology (longest path to the root) from the precomputed
+     * depth table.
+     * @param goID - ID that the level will be retrieved for (e.g. GO_0003675)
+     * @return level of the GO:ID
+     */
     public int getLongestPathToID(String goID){
-        int maxLevel = 0, level;
-        String p_id;
-        OWLClass owlClass = this.factory.getOWLClass(IRI.create(this.go_prefix + goID));
-        //get only the direct super classes for the GO:ID
-        NodeSet<OWLClass> supers = this.reasoner.getSuperClasses(owlClass, true);
-        for(Node<OWLClass> parent : supers){
-            p_id = parent.getRepresentativeElement().getIRI().getShortForm();
-            if (p_id.equals("GO_0008150")){
-                //biological process root
-                break;
-            }
-            if (p_id.equals("GO_0005575")){
-                //cellular component root
-                break;
+        return getLongestPathToID(this.go_ids.encode(goID));
+    }
+
+    /***
+     * getLongestPathToID retrieves the level of a GO:ID given by its ordinal in the GO dictionary, from the lookup
+     * table when it was resolved before scoring.
+     * @param goID - ordinal of the GO:ID
+     * @return level of the GO:ID, or 0 if it is not in the ontology
+     */
+    private int getLongestPathToID(int goID){
+        int depth = this.go_lookup == null ? -1 : this.go_lookup.getDepth(goID), ordinal;
+        if(depth >= 0){
+            return depth;
+        }
+        ordinal = this.go_ids.getIndexOrdinal(goID);
+        this.depth_queries.increment();
+        return ordinal < 0 ? 0 : this.go_index.getDepth(ordinal);
+    }
+
+    /***
+     * levelDistribution counts the GO:IDs of a set at each level in the ontology, overall and for each branch, in one
+     * pass over the set. Levels come from the depth lookup shared with scoring, so the annotations are not walked
+     * again. Ranges of ordinals are counted on the paper workers, and their histograms merged.
+     * @param goids - ordinals of the unique GO:IDs
+     * @param branches - map of GO:IDs to their branch
+     * @return level distributions: [0] all GO:IDs, then one per branch in Branch order (BP, CC, MF)
+     */
+    private LevelHistogram[] levelDistribution(BitSet goids, Map<String, Branch> branches){
+        LevelHistogram[] histograms, part;
+        List<Future<LevelHistogram[]>> futures = new ArrayList<>();
+        if(this.pool == null){
+            return countLevels(goids, branches, 0, goids.length());
+        }
+
+        for(int from = 0; from < goids.length(); from += LEVEL_CHUNK){
+            final int start = from, end = Math.min(from + LEVEL_CHUNK, goids.length());
+            futures.add(this.pool.submit(() -> countLevels(goids, branches, start, end)));
+        }
+        histograms = countLevels(goids, branches, 0, 0);
+        for(Future<LevelHistogram[]> future: futures){
+            try{
+                part = future.get();
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while counting levels", ex);
+            }catch(ExecutionException ex){
+                throw new IllegalStateException("Error: Could not count levels", ex.getCause());
             }
-            if (p_id.equals("GO_0003674")){
-                //molecular function root
-                break;
+            for(int i = 0; i < histograms.length; i++){
+                histograms[i].merge(part[i]);
             }
-            if (p_id.equals("Thing")){
-                //hits GO root
-                return 0;
-            }
-            level = getLongestPathToID(p_id);
-            if (level > maxLevel){
-                maxLevel = level;
-            }
-        }
-        return maxLevel + 1;
-    }
-
-    private Map<Integer, Integer> calculateLevelDistribution(Map<String, List<Annotation>> annos){
-        Map<Integer, Integer> level_dist = new HashMap<>();
-        List<String> seen_ids = new ArrayList<>();
-        String id;
-        int level, curr_count;
-        //System.out.println("break");
-        //pull annotations from file
-        for(String key : annos.keySet()){
-            for(Annotation a : annos.get(key)){
-                //check if id seen, if not add to level dist.
-                id = a.getID();
-                if(!seen_ids.contains(id)) {
-                    seen_ids.add(id);
-                    //get anno level
-                    level = a.getLevel();
-                    //obsolete ID
-                    if (level == 0 && !(id.equals("GO:0008150") || id.equals("GO:0005575") || id.equals("GO:0003674"))){
-                        //System.out.println(id);
-                        level = -1;
-                        a.setLevel(-1);
-                    }
-                    //add level to map if doesn't exist
-                    if (!level_dist.containsKey(level)) {
-                        level_dist.put(level, 1);
-                    }
-                    //increase counter if map contains level
-                    else {
-                        curr_count = level_dist.get(level);
-                        level_dist.replace(level, curr_count + 1);
-                    }
-                }
+        }
+        return histograms;
+    }
+
+    /***
+     * countLevels counts the GO:IDs of a range of ordinals at each level, overall and for each branch.
+     * @param goids - ordinals of the unique GO:IDs
+     * @param branches - map of GO:IDs to their branch
+     * @param from - first ordinal of the range (inclusive)
+     * @param to - last ordinal of the range (exclusive)
+     * @return level distributions: [0] all GO:IDs, then one per branch in Branch order
+     */
+    private LevelHistogram[] countLevels(BitSet goids, Map<String, Branch> branches, int from, int to){
+        LevelHistogram[] histograms = new LevelHistogram[Branch.values().length + 1];
+        Branch branch;
+        int level;
+        for(int i = 0; i < histograms.length; i++){
+            histograms[i] = new LevelHistogram();
+        }
+        for(int id = goids.nextSetBit(from); id >= 0 && id < to; id = goids.nextSetBit(id + 1)){
+            level = levelOf(id);
+            histograms[0].add(level);
+            branch = branches.get(this.go_ids.decode(id));
+            if(branch != null){
+                histograms[branch.ordinal() + 1].add(level);
             }
         }
-        return level_dist;
+        return histograms;
+    }
+
+    /***
+     * levelOf gets the level of a GO:ID for the level distribution.
+     * @param goID - ordinal of the GO:ID
+     * @return level of the GO:ID, -1 if it is obsolete (not in the ontology), or -2 for independent_continuant
+     */
+    private int levelOf(int goID){
+        String id = this.go_ids.decode(goID);
+        int level;
+        if(id.equals("independent_continuant")){
+            return -2;
+        }
+        level = getLongestPathToID(goID);
+        //obsolete ID
+        if(level == 0 && !(id.equals("GO:0008150") || id.equals("GO:0005575") || id.equals("GO:0003674"))){
+            return -1;
+        }
+        return level;
     }
 
     /***
-     * setupOntology sets up the GO ontology for use with the OWL API
+     * setupOntology sets up the GO ontology for use with the OWL API. The classified hierarchy is saved as a snapshot
+     * next to the ontology file, and later runs load the snapshot instead while the ontology file is unchanged. In
+     * module mode, only the module of the GO:IDs in the GO dictionary is classified, and saved as a separate snapshot
+     * for that set of IDs; a snapshot of the whole ontology is still used if there is one.
      * @param ontology - OWL file that contains the ontology
      */
     private void setupOntology(File ontology){
+        File snapshot = new File(ontology.getPath() + ".snapshot");
+        File module_snapshot = new File(ontology.getPath() + ".module.snapshot");
+        String checksum = null, module_key = null;
+        this.go_prefix = "http://purl.obolibrary.org/obo/";
+
+        //use the snapshot if it was built from the same ontology file (and, for a module, the same GO:IDs)
+        try{
+            checksum = OntologyIndex.checksum(ontology);
+            this.go_index = OntologyIndex.load(snapshot, checksum);
+            if(this.go_index == null && this.ontology_module){
+                module_key = checksum + ":" + referencedDigest();
+                this.go_index = OntologyIndex.load(module_snapshot, module_key);
+            }
+            this.metrics.set("ontology_snapshot_hit", "1 if the ontology was loaded from its snapshot, 0 if classified",
+                    "", this.go_index != null ? 1 : 0);
+            if(this.go_index != null){
+                this.go_version = checksum;
+                this.go_ids.bind(this.go_index);
+                return;
+            }
+        }catch(IOException ex){
+            System.out.println("Error: Cannot read ontology snapshot " + snapshot);
+        }
+
         try{
             //setup ontology
             OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
             this.factory = manager.getOWLDataFactory();
             this.go_ontology = manager.loadOntologyFromOntologyDocument(ontology);
-            this.go_prefix = "http://purl.obolibrary.org/obo/";
+            OWLOntology classified = this.ontology_module ? extractModule(manager) : this.go_ontology;
 
             //setup ELK reasoner
+            RunMetrics.Stage stage = this.metrics.stage("classify", null);
             OWLReasonerFactory reasonerFactory = new ElkReasonerFactory();
-            this.reasoner = reasonerFactory.createReasoner(this.go_ontology);
+            this.reasoner = reasonerFactory.createReasoner(classified);
             this.reasoner.precomputeInferences();
+            stage.end();
             LogManager.getLogger("org.semanticweb.elk").setLevel(Level.ERROR);
+
+            //compute the level and superclasses of every class once
+            this.go_index = OntologyIndex.build(classified, this.reasoner, this.metrics);
         }catch(OWLOntologyCreationException ex){
             System.out.println("Error: Cannot create ontology from " + ontology);
+            return;
+        }
+
+        //save the snapshot for later runs; a module gives the same levels and Jaccard values for its GO:IDs, so
+        //results scored with it are kept under the ontology file's checksum
+        this.go_version = checksum;
+        this.go_ids.bind(this.go_index);
+        if(checksum != null){
+            try{
+                if(this.ontology_module){
+                    this.go_index.save(module_snapshot, module_key);
+                }
+                else{
+                    this.go_index.save(snapshot, checksum);
+                }
+            }catch(IOException ex){
+                System.out.println("Error: Could not write to file " + (this.ontology_module ? module_snapshot
+                        : snapshot));
+            }
+        }
+    }
+
+    /***
+     * extractModule extracts the bottom locality module of the GO:IDs in the GO dictionary from the ontology and its
+     * imports. The module holds every axiom needed for the superclasses of those classes, so their levels and Jaccard
+     * values are the same as in the whole ontology, while ELK only classifies the part the annotations refer to.
+     * @param manager - manager the ontology was loaded with
+     * @return module as a new ontology
+     * @throws OWLOntologyCreationException if the module cannot be created
+     */
+    private OWLOntology extractModule(OWLOntologyManager manager) throws OWLOntologyCreationException{
+        Set<OWLEntity> seeds = new HashSet<>();
+        Set<OWLAxiom> axioms = this.go_ontology.getAxioms(Imports.INCLUDED);
+        Set<OWLAxiom> module;
+        OWLClass seed;
+
+        //classes of the referenced GO:IDs that are in the ontology
+        for(String id: referencedIDs()){
+            seed = this.factory.getOWLClass(IRI.create(this.go_prefix + id.replace(":", "_")));
+            if(this.go_ontology.containsClassInSignature(seed.getIRI(), Imports.INCLUDED)){
+                seeds.add(seed);
+            }
+        }
+        RunMetrics.Stage stage = this.metrics.stage("extract_module", null);
+        SyntacticLocalityModuleExtractor extractor = new SyntacticLocalityModuleExtractor(manager, (IRI) null, axioms,
+                ModuleType.BOT);
+        module = new HashSet<>(extractor.extract(seeds));
+        //classes without axioms of their own are still indexed, as they are in the whole ontology
+        for(OWLEntity e: seeds){
+            module.add(this.factory.getOWLDeclarationAxiom(e));
+        }
+        stage.end();
+        this.metrics.set("ontology_module_axioms", "Axioms in the ontology module that was classified", "",
+                module.size());
+        this.metrics.set("ontology_module_goids", "GO:IDs the ontology module was extracted for", "", seeds.size());
+        return manager.createOntology(module);
+    }
+
+    /***
+     * referencedIDs gets the GO:IDs in the GO dictionary.
+     * @return GO:IDs in sorted order
+     */
+    private List<String> referencedIDs(){
+        List<String> ids = new ArrayList<>();
+        for(int i = 0; i < this.go_ids.size(); i++){
+            ids.add(this.go_ids.decode(i));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /***
+     * referencedDigest calculates a hash of the GO:IDs in the GO dictionary, used to key module snapshots.
+     * @return hex SHA-256 digest of the GO:IDs
+     */
+    private String referencedDigest(){
+        MessageDigest digest;
+        StringBuilder hex = new StringBuilder();
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        for(String id: referencedIDs()){
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
         }
+        for(byte b: digest.digest()){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
     }
 
     /***
@@ -1026,66 +2050,63 @@ public class averageJaccard {
      */
     private Map<String, Double> calculateMean(Map<String, double[]> tool_jaccards){
         Map<String, Double> toolmeans = new HashMap<>();
-        double[] jaccards;
-        double sum, mean;
 
         for(String key: tool_jaccards.keySet()){
-            jaccards = tool_jaccards.get(key);
-            sum = 0.0;
-
-            //calculate mean of jaccards
-            for (double val: jaccards) {
-                sum += val;
-            }
-            mean = sum/jaccards.length;
-            //if the average is 0, then GO:ID has probably been removed/updated; flag value with -1
-            if(mean == 0.0) {
-                mean = -1.0;
-            }
+            toolmeans.put(key, calculateMean(tool_jaccards.get(key)));
+        }
+        return toolmeans;
+    }
 
-            //round mean to two decimal places
-            mean = Math.round(mean*100.0);
-            mean = mean/100.0;
+    /***
+     * calculateMean calculates the average Jaccard value of a single paper.
+     * @param jaccards - Jaccard values of the paper's matches
+     * @return average Jaccard value rounded to two decimal places, or -1 if the average is 0
+     */
+    private double calculateMean(double[] jaccards){
+        RunningStats stats = new RunningStats();
+        double mean;
 
-            toolmeans.put(key, mean);
+        //calculate mean of jaccards
+        for (double val: jaccards) {
+            stats.add(val);
         }
-        return toolmeans;
+        mean = stats.getMean();
+        //if the average is 0, then GO:ID has probably been removed/updated; flag value with -1
+        if(mean == 0.0) {
+            mean = -1.0;
+        }
+
+        //round mean to two decimal places
+        mean = Math.round(mean*100.0);
+        mean = mean/100.0;
+        return mean;
     }
 
     /***
      * calculateAveragesForTool calculates the average mean Jaccard value and average deviation value for a tool.
+     * Flagged papers (-1) are left out of the mean and the deviation alike; papers are taken in paper order, so the
+     * values do not depend on how the papers were evaluated.
      * @param tool_means- map from one tool containing all of the average Jaccard values for the files and all
      *                          of the deviations of the average Jaccard values
      * @return array containing the average mean Jaccard value and the average deviation for a tool
      */
     private double[] calculateAvgAndDevForTool(Map<String, Double> tool_means){
         double[] avgdevtoolvalues = new double[2];
-        double mean = 0.0, meancounter = 0.0, temp = 0.0, stddev, twostandard;
+        RunningStats stats = new RunningStats();
+        double mean, twostandard;
 
-        for(String key: tool_means.keySet()){
-            Double val = tool_means.get(key);
+        for(String key: new TreeSet<>(tool_means.keySet())){
+            double val = tool_means.get(key);
 
-            //if vals[x] is not a flag value (-1), count into mean
+            //if vals[x] is not a flag value (-1), count into mean and deviation
             if(!(val < 0.0)){
-                mean += val;
-                meancounter++;
+                stats.add(val);
             }
         }
 
-        //get average mean
-        mean = mean/meancounter;
-
-        //calculate standard deviation
-        for(String key: tool_means.keySet()){
-            Double val = tool_means.get(key);
-            temp += (val - mean)*(val - mean);
-        }
-
-        temp = temp/(tool_means.size()-1);
-        stddev = Math.sqrt(temp);
-
         //calculate 2 standard errors of mean: 2*(std(jaccards)/sqrt(jaccards.length))
-        twostandard = (2*(stddev/(Math.sqrt(tool_means.size()))));
+        mean = stats.getMean();
+        twostandard = stats.getTwoStandardErrors();
 
         //round each value to two decimal places
         mean = Math.round(mean*100.0);
@@ -1123,15 +2144,18 @@ public class averageJaccard {
 
     /***
      * writeOut writes the total number of exact, partial, new annotations, and unique GO:IDs for each tool to a single
-     * tab-separated file.
-     * @param ncbo - CountsAndPartials for NCBO
-     * @param textpresso - CountsAndPartials for Textpresso
-     * @param mm - CountsAndPartials for MetaMap
-     * @param scigraph - CountsAndPartials for Scigraph
+     * tab-separated file. New annotations are the tool's annotations minus its matches (exact and partial), for exact
+     * and lenient matching alike; a tool annotation matching several CRAFT annotations counts once per match, so New
+     * can be negative, more so under lenient matching where one tool span can overlap several CRAFT spans.
+     * @param craft - total counts for CRAFT
+     * @param tools - CountsAndPartials for each tool, in output order
+     * @param lenient - CountsAndPartials of lenient (overlap) matching for each tool; written next to the exact counts
+     *                unless empty
      * @param filename - output file name
      */
-    private void writeOut(int[] craft, CountsAndPartials ncbo, CountsAndPartials textpresso, CountsAndPartials mm,
-                          CountsAndPartials scigraph, File filename){
+    private void writeOut(int[] craft, Map<String, CountsAndPartials> tools, Map<String, CountsAndPartials> lenient,
+                          File filename){
+        CountsAndPartials tool, lenienttool;
         try(PrintWriter writer = new PrintWriter(filename)){
             writer.println("CRAFT");
             writer.println("--------------------------");
@@ -1146,82 +2170,133 @@ public class averageJaccard {
             writer.println("Total independent_continuants: " + craft[9]);
             writer.println("Total annotations with missing IDs (not counting independent_continuants): " + craft[10]);
             writer.println("Total IDs not found: " + craft[11] + "\n\n");
-            writer.println("Tool\tExacts\tPartials\tNew\tUniqueGOs\tFalseNegatives\n");
-            writer.println("NCBO\t" + ncbo.getExacts() + "\t" + ncbo.getPartials() + "\t" + ncbo.getNewAnnotations()
-                    + "\t" + ncbo.getUnique() + "\t" + ncbo.getFalseNegatives());
-            writer.println("Textpresso\t" + textpresso.getExacts() + "\t" + textpresso.getPartials()
-                    + "\t" + textpresso.getNewAnnotations() + "\t" + textpresso.getUnique() + "\t"
-                    + textpresso.getFalseNegatives());
-            writer.println("MetaMap\t" + mm.getExacts() + "\t" + mm.getPartials() + "\t" + mm.getNewAnnotations()
-                    + "\t" + mm.getUnique() + "\t" + mm.getFalseNegatives());
-            writer.println("Scigraph\t" + scigraph.getExacts() + "\t" + scigraph.getPartials() + "\t"
-                    + scigraph.getNewAnnotations() + "\t" + scigraph.getUnique() + "\t" + scigraph.getFalseNegatives());
+            if(!lenient.isEmpty()){
+                writer.println("New and LenientNew: tool annotations minus matches (exact and partial); negative when "
+                        + "tool annotations match several CRAFT annotations");
+            }
+            writer.println("Tool\tExacts\tPartials\tNew\tUniqueGOs\tFalseNegatives" + (lenient.isEmpty() ? ""
+                    : "\tLenientExacts\tLenientPartials\tLenientNew\tLenientFalseNegatives") + "\n");
+            for(String name: tools.keySet()){
+                tool = tools.get(name);
+                lenienttool = lenient.get(name);
+                writer.println(name + "\t" + tool.getExacts() + "\t" + tool.getPartials() + "\t"
+                        + tool.getNewAnnotations() + "\t" + tool.getUnique() + "\t" + tool.getFalseNegatives()
+                        + (lenienttool == null ? "" : "\t" + lenienttool.getExacts() + "\t" + lenienttool.getPartials()
+                        + "\t" + lenienttool.getNewAnnotations() + "\t" + lenienttool.getFalseNegatives()));
+            }
         }catch(FileNotFoundException ex){
             System.out.println("Error: Could not write to file " + filename);
         }
     }
 
     /***
-     * writeOut writes out the average mean and deviation for each tool to a file.
-     * @param ncbovalues - average mean and deviation for NCBO
-     * @param textpressovalues - average mean and deviation for Textpresso
-     * @param metamapvalues - average mean and deviation for MetaMap
-     * @param scigraphvalues - average mean and deviation for Scigraph
+     * writeOutToolAverages writes out the average mean and deviation for each tool to a file.
+     * @param tools - average mean and deviation for each tool, in output order
+     * @param lenient - average mean and deviation of lenient (overlap) matching for each tool; written next to the
+     *                exact values unless empty
      * @param filename - output file name
      */
-    private void writeOut(double[] ncbovalues, double[] textpressovalues, double[] metamapvalues,
-                          double[] scigraphvalues, File filename){
+    private void writeOutToolAverages(Map<String, double[]> tools, Map<String, double[]> lenient, File filename){
+        double[] values, lenientvalues;
         try(PrintWriter writer = new PrintWriter(filename)){
-            writer.println("Tool\tAverageJaccard\tAverageDeviation");
-            writer.println("NCBO\t" + ncbovalues[0] + "\t" + ncbovalues[1]);
-            writer.println("Textpresso\t" + textpressovalues[0] + "\t" + textpressovalues[1]);
-            writer.println("MetaMap\t" + metamapvalues[0] + "\t" + metamapvalues[1]);
-            writer.println("Scigraph\t" + scigraphvalues[0] + "\t" + scigraphvalues[1]);
+            writer.println("Tool\tAverageJaccard\tAverageDeviation" + (lenient.isEmpty() ? ""
+                    : "\tLenientAverageJaccard\tLenientAverageDeviation"));
+            for(String name: tools.keySet()){
+                values = tools.get(name);
+                lenientvalues = lenient.get(name);
+                writer.println(name + "\t" + values[0] + "\t" + values[1] + (lenientvalues == null ? ""
+                        : "\t" + lenientvalues[0] + "\t" + lenientvalues[1]));
+            }
         }catch(FileNotFoundException ex){
             System.out.println("Error: Could not write to file " + filename);
         }
     }
 
-    private void writeOut(Map<Integer, Integer> craftvalues, Map<Integer, Integer> ncbovalues,
-                          Map<Integer, Integer> textpressovalues, Map<Integer, Integer> metamapvalues,
-                          Map<Integer, Integer> scigraphvalues, File filename){
+    /***
+     * writeOut writes out the level distribution for CRAFT and each tool to a file, in level order.
+     * @param craftvalues - level distributions for CRAFT; the first is over all GO:IDs
+     * @param toolvalues - level distributions for each tool, in output order
+     * @param filename - output file name
+     */
+    private void writeOut(LevelHistogram[] craftvalues, Map<String, LevelHistogram[]> toolvalues, File filename){
+        Map<Integer, Integer> values;
         try(PrintWriter writer = new PrintWriter(filename)){
             writer.println("CRAFT Distribution");
             writer.println("--------------------------");
-            for(Integer key : craftvalues.keySet()){
-                writer.println("Level " + key.toString() + ": " + craftvalues.get(key).toString());
-            }
-            writer.println("\n");
-            writer.println("Textpresso Distribution");
-            writer.println("--------------------------");
-            for(Integer key : textpressovalues.keySet()){
-                writer.println("Level " + key.toString() + ": " + textpressovalues.get(key).toString());
-            }
-            writer.println("\n");
-            writer.println("MetaMap Distribution");
-            writer.println("--------------------------");
-            for(Integer key : metamapvalues.keySet()){
-                writer.println("Level " + key.toString() + ": " + metamapvalues.get(key).toString());
+            values = craftvalues[0].toMap();
+            for(Integer key : values.keySet()){
+                writer.println("Level " + key.toString() + ": " + values.get(key).toString());
             }
-            writer.println("\n");
-            writer.println("NCBO Distribution");
-            writer.println("--------------------------");
-            for(Integer key : ncbovalues.keySet()){
-                writer.println("Level " + key.toString() + ": " + ncbovalues.get(key).toString());
+            for(String name : toolvalues.keySet()){
+                values = toolvalues.get(name)[0].toMap();
+                writer.println("\n");
+                writer.println(name + " Distribution");
+                writer.println("--------------------------");
+                for(Integer key : values.keySet()){
+                    writer.println("Level " + key.toString() + ": " + values.get(key).toString());
+                }
             }
-            writer.println("\n");
-            writer.println("Scigraph Distribution");
-            writer.println("--------------------------");
-            for(Integer key : scigraphvalues.keySet()){
-                writer.println("Level " + key.toString() + ": " + scigraphvalues.get(key).toString());
+        }catch(FileNotFoundException ex){
+            System.out.println("Error: Could not write to file " + filename);
+        }
+    }
+
+    /***
+     * writeOutBranchLevels writes out the level distribution of each branch (BP, CC, MF) for CRAFT and each tool to a
+     * file, one row per level. GO:IDs in none of the branches are only in the overall distribution.
+     * @param craftvalues - level distributions for CRAFT; then one per branch follow the overall one
+     * @param toolvalues - level distributions for each tool, in output order
+     * @param filename - output file name
+     */
+    private void writeOutBranchLevels(LevelHistogram[] craftvalues, Map<String, LevelHistogram[]> toolvalues,
+                                      File filename){
+        Map<String, LevelHistogram[]> all = new LinkedHashMap<>();
+        LevelHistogram[] histograms;
+        StringBuilder row;
+        int max, count;
+        all.put("CRAFT", craftvalues);
+        all.putAll(toolvalues);
+        try(PrintWriter writer = new PrintWriter(filename)){
+            for(String name : all.keySet()){
+                histograms = all.get(name);
+                if(!name.equals("CRAFT")){
+                    writer.println("\n");
+                }
+                writer.println(name + " Distribution by Branch");
+                writer.println("--------------------------");
+                writer.println("Level\tBP\tCC\tMF");
+                max = LevelHistogram.getMinLevel() - 1;
+                for(int i = 1; i < histograms.length; i++){
+                    max = Math.max(max, histograms[i].getMaxLevel());
+                }
+                for(int level = LevelHistogram.getMinLevel(); level <= max; level++){
+                    row = new StringBuilder(Integer.toString(level));
+                    count = 0;
+                    for(int i = 1; i < histograms.length; i++){
+                        row.append("\t").append(histograms[i].get(level));
+                        count += histograms[i].get(level);
+                    }
+                    //skip levels no branch has
+                    if(count > 0){
+                        writer.println(row);
+                    }
+                }
             }
         }catch(FileNotFoundException ex){
             System.out.println("Error: Could not write to file " + filename);
         }
     }
-    
-    private void writeOutBuckets(Map<Integer, double[]> craft, Map<Integer, double[]> ncbo, Map<Integer, double[]> textpresso,
-                          Map<Integer, double[]> metamap, Map<Integer, double[]> scigraph, File filename){
+
+    /***
+     * writeOutBuckets writes out the word count distribution for CRAFT, and the count, mean Jaccard value, and 2nd
+     * standard error of the mean per word count for each tool.
+     * @param craft - word count distribution for CRAFT
+     * @param tools - count, mean, and 2nd standard error per word count for each tool, in output order
+     * @param filename - output file name
+     */
+    private void writeOutBuckets(Map<Integer, double[]> craft, Map<String, Map<Integer, double[]>> tools,
+                                 File filename){
+        Map<Integer, double[]> buckets;
         double[] tool;
         try(PrintWriter writer = new PrintWriter(filename)){
             writer.println("CRAFT");
@@ -1230,36 +2305,18 @@ public class averageJaccard {
                 tool = craft.get(i);
                 writer.println(i.toString() + "\t" + tool[0]);
             }
-            writer.println("\nNCBO");
-            writer.println("--------------------------");
-            writer.println("Bucket\tCount\tMean\tTwoStandard");
-            for (Integer i : ncbo.keySet()){
-                tool = ncbo.get(i);
-                writer.println(i.toString() + "\t" + tool[0] + "\t" + tool[1] + "\t" + tool[2]);
-            }
-            writer.println("\nTextpresso");
-            writer.println("--------------------------");
-            writer.println("Bucket\tCount\tMean\tTwoStandard");
-            for (Integer i : textpresso.keySet()){
-                tool = textpresso.get(i);
-                writer.println(i.toString() + "\t" + tool[0] + "\t" + tool[1] + "\t" + tool[2]);
-            }
-            writer.println("\nMetaMap");
-            writer.println("--------------------------");
-            writer.println("Bucket\tCount\tMean\tTwoStandard");
-            for (Integer i : metamap.keySet()){
-                tool = metamap.get(i);
-                writer.println(i.toString() + "\t" + tool[0] + "\t" + tool[1] + "\t" + tool[2]);
-            }
-            writer.println("\nScigraph");
-            writer.println("--------------------------");
-            writer.println("Bucket\tCount\tMean\tTwoStandard");
-            for (Integer i : scigraph.keySet()){
-                tool = scigraph.get(i);
-                writer.println(i.toString() + "\t" + tool[0] + "\t" + tool[1] + "\t" + tool[2]);
+            for(String name : tools.keySet()){
+                buckets = tools.get(name);
+                writer.println("\n" + name);
+                writer.println("--------------------------");
+                writer.println("Bucket\tCount\tMean\tTwoStandard");
+                for (Integer i : buckets.keySet()){
+                    tool = buckets.get(i);
+                    writer.println(i.toString() + "\t" + tool[0] + "\t" + tool[1] + "\t" + tool[2]);
+                }
             }
         }catch(FileNotFoundException ex){
         System.out.println("Error: Could not write to file " + filename);
         }
     }
-}
\ No newline at end of file
+}